@@ -0,0 +1,369 @@
+package com.payroll.esupdater;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Indexes search documents straight into Elasticsearch with the _bulk API, skipping the
+ * employee-search topic and the sink connector.
+ *
+ * Documents become index actions and deletes become delete actions. Actions are buffered and a
+ * bulk request is dispatched once the buffer holds maxActions actions or maxBytes bytes, or its
+ * oldest action has waited lingerMs. At most maxInFlight requests are outstanding; send blocks
+ * for a free slot, which slows the worker shards down to what the cluster accepts. A 429 or
+ * 502-504, for the whole request or single items, is retried with exponential backoff and
+ * jitter, resending only the rejected items. Any other item error, or running out of retries,
+ * fails the next flush. Deleting a document that is not there is not an error. close flushes
+ * what is still buffered first.
+ *
+ * With partial updates enabled, update sends a scripted update calling the stored
+ * SearchDocumentWriter.UPDATE_SCRIPT, which is registered when the sink starts. An update whose
+ * document is missing (deleted outside the updater, or never indexed) is resent as an index
+ * action with the full document. With partial updates off, update indexes the full document.
+ *
+ * Requests may complete in any order: the caller flushes between poll batches and emits at
+ * most one action per employee per batch, so no two actions for a document are ever in flight.
+ */
+final class BulkSearchSink implements SearchDocumentSink {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkSearchSink.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+    // Items come back in request order; only their status and error are needed
+    private static final String BULK_PATH = "/_bulk?filter_path=errors,items.*.status,items.*.error";
+    private static final byte[] NEWLINE = {'\n'};
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    /** One bulk action: its metadata line and, except for deletes, its source line. */
+    private static final class Action {
+        final String employeeId;
+        final String op;
+        final byte[] meta;
+        final byte[] source;
+        final Supplier<byte[]> fullDocument; // updates only, indexed if the document is missing
+
+        Action(String employeeId, String op, byte[] meta, byte[] source, Supplier<byte[]> fullDocument) {
+            this.employeeId = employeeId;
+            this.op = op;
+            this.meta = meta;
+            this.source = source;
+            this.fullDocument = fullDocument;
+        }
+
+        int length() {
+            return meta.length + (source != null ? source.length + 1 : 0);
+        }
+    }
+
+    private final HttpClient client;
+    private final URI baseUri;
+    private final URI bulkUri;
+    private final boolean partialUpdates;
+    private final String index;
+    // The index name as escaped JSON string content, for the action metadata lines
+    private final String quotedIndex;
+    private final int maxActions;
+    private final int maxBytes;
+    private final long lingerNanos;
+    private final int maxInFlight;
+    private final int maxRetries;
+    private final long backoffMs;
+    private final Duration requestTimeout;
+
+    private final Semaphore inFlight;
+    private final ScheduledExecutorService lingerTimer;
+    // First failure since the last flush, reported by request completions
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    // Actions not yet dispatched, guarded by this
+    private List<Action> pending = new ArrayList<>();
+    private int pendingBytes;
+    private long pendingSince;
+    // Batches taken from pending that do not hold an in-flight permit yet, guarded by this.
+    // flush waits for them, or it could find pending empty and all permits free while a
+    // batch taken by the linger timer is still on its way out.
+    private int dispatching;
+
+    BulkSearchSink(String url, String index, boolean partialUpdates, int maxActions, int maxBytes, long lingerMs,
+                   int maxInFlight, int maxRetries, long backoffMs, long requestTimeoutMs) {
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(requestTimeoutMs))
+            .build();
+        this.baseUri = URI.create(url.replaceAll("/+$", "") + "/");
+        this.bulkUri = baseUri.resolve(BULK_PATH.substring(1));
+        this.index = index;
+        this.quotedIndex = quote(index);
+        this.partialUpdates = partialUpdates;
+        this.maxActions = Math.max(1, maxActions);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxRetries = maxRetries;
+        this.backoffMs = Math.max(1, backoffMs);
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.inFlight = new Semaphore(this.maxInFlight, true);
+
+        this.lingerTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "es-updater-bulk-linger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, lingerMs / 2);
+        lingerTimer.scheduleWithFixedDelay(this::dispatchIfLingering, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /** Register the stored update script; a no-op without partial updates. */
+    void start() throws Exception {
+        if (!partialUpdates) return;
+        byte[] body = mapper.writeValueAsBytes(Map.of("script",
+            Map.of("lang", "painless", "source", SearchDocumentWriter.UPDATE_SCRIPT)));
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("_scripts/" + SearchDocumentWriter.UPDATE_SCRIPT_ID))
+            .timeout(requestTimeout)
+            .header("Content-Type", "application/json")
+            .PUT(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException("Failed to store script " + SearchDocumentWriter.UPDATE_SCRIPT_ID
+                + ": HTTP " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    @Override
+    public void send(String employeeId, byte[] document) {
+        add(document != null
+            ? new Action(employeeId, "index", meta("index", employeeId), document, null)
+            : new Action(employeeId, "delete", meta("delete", employeeId), null, null));
+    }
+
+    @Override
+    public boolean supportsPartialUpdates() {
+        return partialUpdates;
+    }
+
+    @Override
+    public void update(String employeeId, byte[] update, Supplier<byte[]> fullDocument) {
+        if (!partialUpdates) {
+            send(employeeId, fullDocument.get());
+            return;
+        }
+        add(new Action(employeeId, "update", meta("update", employeeId), update, fullDocument));
+    }
+
+    private void add(Action action) {
+        List<Action> full = null;
+        synchronized (this) {
+            if (pending.isEmpty()) pendingSince = System.nanoTime();
+            pending.add(action);
+            pendingBytes += action.length();
+            if (pending.size() >= maxActions || pendingBytes >= maxBytes) {
+                full = takePending();
+            }
+        }
+        if (full != null) dispatch(full);
+    }
+
+    @Override
+    public void flush() throws Exception {
+        List<Action> rest;
+        synchronized (this) {
+            rest = takePending();
+        }
+        if (!rest.isEmpty()) dispatch(rest);
+
+        synchronized (this) {
+            while (dispatching > 0) {
+                wait();
+            }
+        }
+        // Every request holds a permit until it and its retries are done
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+
+        Exception failed = failure.getAndSet(null);
+        if (failed != null) {
+            throw new IllegalStateException("Failed to index into Elasticsearch at " + bulkUri, failed);
+        }
+    }
+
+    /** Flush what is still buffered or in flight, then stop the linger timer. */
+    @Override
+    public void close() {
+        int unsent;
+        synchronized (this) {
+            unsent = pending.size();
+        }
+        try {
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while flushing on close, {} buffered actions may not have been indexed", unsent);
+        } catch (Exception e) {
+            log.warn("Flush on close failed, {} buffered actions may not have been indexed into {}: {}",
+                unsent, index, e.getMessage());
+        } finally {
+            lingerTimer.shutdownNow();
+        }
+    }
+
+    private byte[] meta(String op, String employeeId) {
+        return ("{\"" + op + "\":{\"_index\":\"" + quotedIndex + "\",\"_id\":\"" + quote(employeeId) + "\"}}\n")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String quote(String value) {
+        return new String(JsonStringEncoder.getInstance().quoteAsString(value));
+    }
+
+    private List<Action> takePending() {
+        List<Action> taken = pending;
+        pending = new ArrayList<>();
+        pendingBytes = 0;
+        if (!taken.isEmpty()) dispatching++;
+        return taken;
+    }
+
+    private void dispatchIfLingering() {
+        try {
+            List<Action> due = null;
+            synchronized (this) {
+                if (!pending.isEmpty() && System.nanoTime() - pendingSince >= lingerNanos) {
+                    due = takePending();
+                }
+            }
+            if (due != null) dispatch(due);
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    /** Send actions taken with takePending, once a request slot is free. */
+    private void dispatch(List<Action> actions) {
+        inFlight.acquireUninterruptibly();
+        synchronized (this) {
+            if (--dispatching == 0) notifyAll();
+        }
+        submit(actions, 0);
+    }
+
+    private void submit(List<Action> actions, int attempt) {
+        try {
+            List<byte[]> body = new ArrayList<>(actions.size() * 3);
+            for (Action action : actions) {
+                body.add(action.meta);
+                if (action.source != null) {
+                    body.add(action.source);
+                    body.add(NEWLINE);
+                }
+            }
+            HttpRequest request = HttpRequest.newBuilder(bulkUri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(body))
+                .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((response, error) -> complete(actions, attempt, response, error));
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+            inFlight.release();
+        }
+    }
+
+    private void complete(List<Action> actions, int attempt, HttpResponse<byte[]> response, Throwable error) {
+        List<Action> retry;
+        String reason;
+        try {
+            if (error != null) {
+                retry = actions;
+                reason = error.toString();
+            } else if (retryable(response.statusCode())) {
+                retry = actions;
+                reason = "HTTP " + response.statusCode();
+            } else if (response.statusCode() >= 300) {
+                throw new IllegalStateException("Bulk request failed with HTTP " + response.statusCode()
+                    + ": " + new String(response.body(), StandardCharsets.UTF_8));
+            } else {
+                retry = rejectedItems(actions, response.body());
+                reason = "item rejections";
+            }
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+            inFlight.release();
+            return;
+        }
+
+        if (retry.isEmpty()) {
+            inFlight.release();
+        } else if (attempt >= maxRetries) {
+            failure.compareAndSet(null, new IllegalStateException(
+                retry.size() + " bulk actions still rejected after " + maxRetries + " retries (" + reason + ")"));
+            inFlight.release();
+        } else {
+            long delay = backoff(attempt);
+            log.warn("Retrying {} of {} bulk actions in {} ms after {}", retry.size(), actions.size(), delay, reason);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                .execute(() -> submit(retry, attempt + 1));
+        }
+    }
+
+    /** @return the actions to retry; records a failure for items that cannot succeed */
+    private List<Action> rejectedItems(List<Action> actions, byte[] body) throws Exception {
+        JsonNode root = mapper.readTree(body);
+        if (!root.path("errors").asBoolean(false)) return List.of();
+
+        JsonNode items = root.path("items");
+        if (items.size() != actions.size()) {
+            throw new IllegalStateException("Bulk response has " + items.size() + " items for "
+                + actions.size() + " actions");
+        }
+        List<Action> retry = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            Map.Entry<String, JsonNode> item = items.get(i).fields().next();
+            int status = item.getValue().path("status").asInt();
+            Action action = actions.get(i);
+            if (status < 300 || (status == 404 && "delete".equals(action.op))) continue;
+
+            if (status == 404 && action.fullDocument != null) {
+                retry.add(new Action(action.employeeId, "index", meta("index", action.employeeId),
+                    action.fullDocument.get(), null));
+            } else if (retryable(status)) {
+                retry.add(action);
+            } else {
+                failure.compareAndSet(null, new IllegalStateException("Bulk " + item.getKey()
+                    + " rejected with " + status + ": " + item.getValue().path("error")));
+            }
+        }
+        return retry;
+    }
+
+    private static boolean retryable(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    /** Exponential backoff with jitter: a random delay in [d/2, d], d = backoffMs * 2^attempt. */
+    private long backoff(int attempt) {
+        long delay = Math.min(MAX_BACKOFF_MS, backoffMs << Math.min(attempt, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+}
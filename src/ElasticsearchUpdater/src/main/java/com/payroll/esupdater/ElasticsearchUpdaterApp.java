@@ -6,15 +6,21 @@ import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -25,15 +31,22 @@ public class ElasticsearchUpdaterApp {
     private static final Logger log = LoggerFactory.getLogger(ElasticsearchUpdaterApp.class);
     private static final ObjectMapper mapper = new ObjectMapper();
     private static final long RESTART_DELAY_MS = 30_000;
-    private static final int MAX_PAY_PERIODS = 4;
+    // Rolling window of pay periods kept per employee and included in search documents
+    static final int MAX_PAY_PERIODS = Integer.parseInt(envOrDefault("MAX_PAY_PERIODS", "4"));
+    private static final String SNAPSHOT_FILE = "es-updater-state.bin";
 
     static final String EMPLOYEE_INFO_TOPIC = "employee-info";
     static final String EMPLOYEE_NET_PAY_TOPIC = "employee-net-pay";
     static final String EMPLOYEE_SEARCH_TOPIC = "employee-search";
 
     // In-memory state
-    static final Map<String, EmployeeInfo> employeeInfoMap = new ConcurrentHashMap<>();
-    static final Map<String, TreeMap<Long, PayPeriodRecord>> payPeriodsMap = new ConcurrentHashMap<>();
+    static final Map<String, PayPeriodRing> payPeriodsMap = new ConcurrentHashMap<>();
+    // Next offset to apply per input partition, i.e. what the in-memory state reflects
+    static final Map<TopicPartition, Long> appliedOffsets = new ConcurrentHashMap<>();
+
+    // Worker threads that apply records, one shard of employees each, with each shard's
+    // employee info store; replaced per run
+    private static EmployeeShards shards = new EmployeeShards(1);
 
     private static volatile boolean shuttingDown = false;
 
@@ -65,78 +78,135 @@ public class ElasticsearchUpdaterApp {
     }
 
     private static boolean runOnce() {
-        // Clear stale in-memory state from any previous run
-        employeeInfoMap.clear();
+        // Clear stale in-memory state from any previous run; the new shards bring empty info stores
         payPeriodsMap.clear();
+        appliedOffsets.clear();
 
         String bootstrapServers = envOrDefault("KAFKA_BOOTSTRAP_SERVERS", "localhost:29092");
         String groupId = envOrDefault("APPLICATION_ID", "elasticsearch-updater");
+        Path snapshotFile = Paths.get(envOrDefault("SNAPSHOT_DIR", "snapshot"), SNAPSHOT_FILE);
+        long snapshotIntervalMs = Long.parseLong(envOrDefault("SNAPSHOT_INTERVAL_MS", "60000"));
+        int workerThreads = Integer.parseInt(envOrDefault("WORKER_THREADS",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
 
+        shards = new EmployeeShards(workerThreads);
         try {
-            // Pre-scan both topics to rebuild in-memory state
-            prescan(bootstrapServers);
+            // Restore the last snapshot, then pre-scan from it up to the committed offsets
+            Map<TopicPartition, Long> restored = StateSnapshot.load(snapshotFile, shards, payPeriodsMap);
+            if (restored != null) {
+                appliedOffsets.putAll(restored);
+            }
+            if (prescan(bootstrapServers, groupId)) {
+                writeSnapshot(snapshotFile);
+            }
 
             // Main consumer loop
             Properties consumerProps = new Properties();
             consumerProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
             consumerProps.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
             consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-            consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
+            consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
             consumerProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-            consumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-
-            Properties producerProps = new Properties();
-            producerProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-            producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-            producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+            consumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
 
-            try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(consumerProps);
-                 KafkaProducer<String, String> producer = new KafkaProducer<>(producerProps)) {
+            try (KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<>(consumerProps);
+                 SearchDocumentSink sink = createSink(bootstrapServers)) {
 
                 consumer.subscribe(Arrays.asList(EMPLOYEE_INFO_TOPIC, EMPLOYEE_NET_PAY_TOPIC));
                 log.info("Elasticsearch Updater started, subscribed to [{}, {}]",
                     EMPLOYEE_INFO_TOPIC, EMPLOYEE_NET_PAY_TOPIC);
 
+                long lastSnapshotAt = System.currentTimeMillis();
                 while (!shuttingDown) {
-                    ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(1));
-                    for (ConsumerRecord<String, String> record : records) {
-                        try {
-                            if (EMPLOYEE_INFO_TOPIC.equals(record.topic())) {
-                                handleEmployeeInfo(record, producer);
-                            } else if (EMPLOYEE_NET_PAY_TOPIC.equals(record.topic())) {
-                                handleNetPay(record, producer);
-                            }
-                        } catch (Exception e) {
-                            log.error("Error processing record from {}: {}", record.topic(), e.getMessage(), e);
-                        }
+                    ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofSeconds(1));
+                    if (!records.isEmpty()) {
+                        // At-least-once: offsets are committed only after the batch's sends are acknowledged
+                        processBatch(records, sink);
+                        consumer.commitSync();
+                    }
+
+                    if (System.currentTimeMillis() - lastSnapshotAt >= snapshotIntervalMs) {
+                        writeSnapshot(snapshotFile);
+                        lastSnapshotAt = System.currentTimeMillis();
                     }
                 }
             }
 
+            writeSnapshot(snapshotFile);
+
             return false; // graceful shutdown
         } catch (Exception e) {
             log.error("Elasticsearch Updater failed: {}", e.getMessage(), e);
             return true; // restart
+        } finally {
+            shards.close();
         }
     }
 
     /**
-     * Pre-scan both topics from the beginning to rebuild in-memory state.
-     * Uses a temporary consumer group with manual partition assignment.
+     * SINK_MODE=kafka (default) produces search documents to the employee-search topic for the
+     * sink connector; SINK_MODE=elasticsearch indexes them directly with bulk requests, and with
+     * ES_PARTIAL_UPDATES=true sends only what changed once an employee's document exists.
      */
-    private static void prescan(String bootstrapServers) {
+    private static SearchDocumentSink createSink(String bootstrapServers) throws Exception {
+        String mode = envOrDefault("SINK_MODE", "kafka");
+        if ("elasticsearch".equalsIgnoreCase(mode)) {
+            String url = envOrDefault("ES_URL", "http://localhost:9200");
+            String index = envOrDefault("ES_INDEX", EMPLOYEE_SEARCH_TOPIC);
+            boolean partialUpdates = Boolean.parseBoolean(envOrDefault("ES_PARTIAL_UPDATES", "false"));
+            log.info("Indexing search documents directly into {} at {} (partial updates: {})",
+                index, url, partialUpdates);
+            BulkSearchSink sink = new BulkSearchSink(url, index, partialUpdates,
+                Integer.parseInt(envOrDefault("ES_BULK_MAX_ACTIONS", "1000")),
+                Integer.parseInt(envOrDefault("ES_BULK_MAX_BYTES", "5242880")),
+                Long.parseLong(envOrDefault("ES_BULK_LINGER_MS", "1000")),
+                Integer.parseInt(envOrDefault("ES_BULK_MAX_IN_FLIGHT", "2")),
+                Integer.parseInt(envOrDefault("ES_BULK_MAX_RETRIES", "8")),
+                Long.parseLong(envOrDefault("ES_BULK_RETRY_BACKOFF_MS", "100")),
+                Long.parseLong(envOrDefault("ES_BULK_TIMEOUT_MS", "30000")));
+            try {
+                sink.start();
+            } catch (Exception e) {
+                sink.close();
+                throw e;
+            }
+            return sink;
+        }
+        if (!"kafka".equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException("Unknown SINK_MODE: " + mode);
+        }
+
+        Properties producerProps = new Properties();
+        producerProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        producerProps.put(ProducerConfig.LINGER_MS_CONFIG, envOrDefault("PRODUCER_LINGER_MS", "5"));
+        producerProps.put(ProducerConfig.BATCH_SIZE_CONFIG, envOrDefault("PRODUCER_BATCH_SIZE", "65536"));
+        producerProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, envOrDefault("PRODUCER_COMPRESSION_TYPE", "lz4"));
+        return new KafkaSearchSink(new KafkaProducer<>(producerProps), EMPLOYEE_SEARCH_TOPIC);
+    }
+
+    /**
+     * Pre-scan both topics to rebuild in-memory state up to the main consumer group's committed
+     * offsets, starting each partition at its restored snapshot offset (or the beginning if
+     * there is none). Records after the committed offsets are left to the main loop, which
+     * applies them and emits their documents.
+     * Uses manual partition assignment under the main group ID, only to read its committed
+     * offsets; the pre-scan consumer never commits or joins the group.
+     * @return true if the topics were scanned
+     */
+    private static boolean prescan(String bootstrapServers, String groupId) throws Exception {
         log.info("Pre-scanning topics to rebuild in-memory state...");
 
         Properties props = new Properties();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, "es-updater-prescan-" + System.currentTimeMillis());
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
 
-        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props)) {
-            // Assign all partitions from both topics
+        try (KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<>(props)) {
             List<TopicPartition> partitions = new ArrayList<>();
             for (String topic : Arrays.asList(EMPLOYEE_INFO_TOPIC, EMPLOYEE_NET_PAY_TOPIC)) {
                 try {
@@ -152,94 +222,209 @@ public class ElasticsearchUpdaterApp {
 
             if (partitions.isEmpty()) {
                 log.info("No partitions available for pre-scan, starting fresh");
-                return;
+                return false;
             }
 
-            consumer.assign(partitions);
-            consumer.seekToBeginning(partitions);
-
+            Map<TopicPartition, Long> beginningOffsets = consumer.beginningOffsets(partitions);
             Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
-            int infoCount = 0, netPayCount = 0;
-            boolean done = false;
-
-            while (!done) {
-                ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(5));
-                if (records.isEmpty()) {
-                    done = true;
-                    for (TopicPartition tp : partitions) {
-                        if (consumer.position(tp) < endOffsets.get(tp)) {
-                            done = false;
-                            break;
-                        }
-                    }
-                    continue;
+            Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(new HashSet<>(partitions));
+
+            // A snapshot ahead of a topic's end means the topic was recreated; start over
+            for (TopicPartition tp : partitions) {
+                Long applied = appliedOffsets.get(tp);
+                if (applied != null && applied > endOffsets.get(tp)) {
+                    log.warn("Snapshot offset {} for {} is past the end offset {}, discarding snapshot",
+                        applied, tp, endOffsets.get(tp));
+                    shards.clearInfoStores();
+                    payPeriodsMap.clear();
+                    appliedOffsets.clear();
+                    break;
                 }
+            }
 
-                for (ConsumerRecord<String, String> record : records) {
-                    try {
-                        if (EMPLOYEE_INFO_TOPIC.equals(record.topic())) {
-                            processEmployeeInfoRecord(record);
-                            infoCount++;
-                        } else if (EMPLOYEE_NET_PAY_TOPIC.equals(record.topic())) {
-                            processNetPayRecord(record);
-                            netPayCount++;
-                        }
-                    } catch (Exception e) {
-                        // Skip unparseable records during pre-scan
-                    }
+            // Scan [snapshot offset, committed offset) of each partition. Without a committed
+            // offset the main loop starts from the beginning, so there is nothing to pre-scan.
+            Map<TopicPartition, Long> stopOffsets = new HashMap<>();
+            Map<TopicPartition, Long> startOffsets = new HashMap<>();
+            for (TopicPartition tp : partitions) {
+                OffsetAndMetadata commit = committed.get(tp);
+                long begin = beginningOffsets.get(tp);
+                long stop = commit != null ? Math.min(commit.offset(), endOffsets.get(tp)) : begin;
+                long from = Math.max(appliedOffsets.getOrDefault(tp, begin), begin);
+                if (from < stop) {
+                    startOffsets.put(tp, from);
+                    stopOffsets.put(tp, stop);
                 }
+            }
 
-                done = true;
-                for (TopicPartition tp : partitions) {
-                    if (consumer.position(tp) < endOffsets.get(tp)) {
-                        done = false;
-                        break;
+            if (stopOffsets.isEmpty()) {
+                log.info("Pre-scan: state is already at the committed offsets");
+                return true;
+            }
+
+            consumer.assign(startOffsets.keySet());
+            startOffsets.forEach(consumer::seek);
+            int infoCount = 0, netPayCount = 0;
+
+            while (!reachedOffsets(consumer, stopOffsets)) {
+                ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofSeconds(5));
+                List<ConsumerRecord<String, byte[]>> batch = new ArrayList<>(records.count());
+                for (ConsumerRecord<String, byte[]> record : records) {
+                    // Fetches can run past the stop offset; those records belong to the main loop
+                    if (record.offset() >= stopOffsets.get(new TopicPartition(record.topic(), record.partition()))) {
+                        continue;
+                    }
+                    batch.add(record);
+                    if (EMPLOYEE_INFO_TOPIC.equals(record.topic())) {
+                        infoCount++;
+                    } else {
+                        netPayCount++;
                     }
                 }
+
+                shards.run(routeByEmployee(batch), ElasticsearchUpdaterApp::applyOnly);
+                batch.forEach(ElasticsearchUpdaterApp::markApplied);
             }
 
-            log.info("Pre-scan complete: {} employee-info records, {} net-pay records, {} employees in state",
-                infoCount, netPayCount, employeeInfoMap.size());
-        } catch (Exception e) {
-            log.warn("Pre-scan failed (starting with empty state): {}", e.getMessage());
+            log.info("Pre-scan complete: {} employee-info records, {} net-pay records, {} employees in state ({} MB off-heap)",
+                infoCount, netPayCount, shards.employeeCount(),
+                shards.infoStores().stream().mapToLong(EmployeeInfoStore::offHeapBytes).sum() >> 20);
+            return true;
+        }
+    }
+
+    /** Apply a pre-scan slice to state without emitting documents. */
+    private static int applyOnly(List<ConsumerRecord<String, byte[]>> slice) {
+        for (ConsumerRecord<String, byte[]> record : slice) {
+            try {
+                if (record.key() == null) continue;
+                if (EMPLOYEE_INFO_TOPIC.equals(record.topic())) {
+                    processEmployeeInfoRecord(record, RecordKey.employeeIdOf(record.key()));
+                } else if (EMPLOYEE_NET_PAY_TOPIC.equals(record.topic())) {
+                    processNetPayRecord(record, RecordKey.ofNetPay(record.key()));
+                }
+            } catch (Exception e) {
+                // Skip unparseable records during pre-scan
+            }
+        }
+        return slice.size();
+    }
+
+    private static boolean reachedOffsets(KafkaConsumer<?, ?> consumer, Map<TopicPartition, Long> targets) {
+        for (Map.Entry<TopicPartition, Long> target : targets.entrySet()) {
+            if (consumer.position(target.getKey()) < target.getValue()) {
+                return false;
+            }
         }
+        return true;
     }
 
     /**
-     * Extract employee ID from a record key.
-     * ksqlDB KEY_FORMAT='JSON' with a single key column produces a JSON string value
-     * (e.g. "d0084eb8-..."), not a JSON object {"EMPLOYEE_ID":"..."}.
+     * Apply a poll batch to state, then send one document (or tombstone) per employee touched
+     * by the batch to the sink, asynchronously, and flush once so the whole batch is acknowledged
+     * before its offsets are committed. Throws if any send failed, so the batch is not committed.
+     * Employees are split across the worker shards; each shard applies and emits its own.
+     * @return number of documents and tombstones sent
      */
-    private static String extractEmployeeIdFromKey(String rawKey) {
-        if (rawKey == null) return null;
-        try {
-            JsonNode key = mapper.readTree(rawKey);
-            if (key.isTextual()) {
-                return key.asText();
+    static int processBatch(ConsumerRecords<String, byte[]> records, SearchDocumentSink sink) throws Exception {
+        long start = System.currentTimeMillis();
+
+        int sent = shards.run(routeByEmployee(records), slice -> applyAndEmit(slice, sink));
+        // Offsets are recorded here, in partition order, not by the shards
+        records.forEach(ElasticsearchUpdaterApp::markApplied);
+
+        sink.flush();
+
+        log.info("Batch processed: {} records, {} documents sent in {} ms",
+            records.count(), sent, System.currentTimeMillis() - start);
+        return sent;
+    }
+
+    private static int applyAndEmit(List<ConsumerRecord<String, byte[]>> slice, SearchDocumentSink sink) {
+        // Employee -> what the slice changed for it, in first-seen order
+        Map<String, DirtyEmployee> dirty = new LinkedHashMap<>();
+        for (ConsumerRecord<String, byte[]> record : slice) {
+            try {
+                if (EMPLOYEE_INFO_TOPIC.equals(record.topic())) {
+                    handleEmployeeInfo(record, dirty);
+                } else if (EMPLOYEE_NET_PAY_TOPIC.equals(record.topic())) {
+                    handleNetPay(record, dirty);
+                }
+            } catch (Exception e) {
+                log.error("Error processing record from {}: {}", record.topic(), e.getMessage(), e);
+            }
+        }
+
+        int sent = 0;
+        for (Map.Entry<String, DirtyEmployee> entry : dirty.entrySet()) {
+            try {
+                sent += emitDocument(entry.getKey(), entry.getValue(), sink);
+            } catch (Exception e) {
+                log.error("Error building search document for {}: {}", entry.getKey(), e.getMessage(), e);
             }
-            // Fallback: JSON object with EMPLOYEE_ID field
-            String id = key.path("EMPLOYEE_ID").asText(null);
-            if (id != null) return id;
+        }
+        return sent;
+    }
+
+    /** Split records into per-shard slices by employee ID, keeping their order. */
+    private static List<List<ConsumerRecord<String, byte[]>>> routeByEmployee(Iterable<ConsumerRecord<String, byte[]>> records) {
+        List<List<ConsumerRecord<String, byte[]>>> slices = shards.newSlices();
+        if (shards.shardCount() == 1) {
+            records.forEach(slices.get(0)::add);
+            return slices;
+        }
+        for (ConsumerRecord<String, byte[]> record : records) {
+            slices.get(shards.shardOf(routingEmployeeId(record))).add(record);
+        }
+        return slices;
+    }
+
+    private static String routingEmployeeId(ConsumerRecord<String, byte[]> record) {
+        if (record.key() == null) return null;
+        if (EMPLOYEE_INFO_TOPIC.equals(record.topic())) {
+            return RecordKey.employeeIdOf(record.key());
+        }
+        try {
+            return RecordKey.ofNetPay(record.key()).employeeId();
         } catch (Exception e) {
-            // Raw string without JSON wrapping
-            return rawKey.replaceAll("^\"|\"$", "");
+            return null;
+        }
+    }
+
+    private static void markApplied(ConsumerRecord<?, ?> record) {
+        appliedOffsets.put(new TopicPartition(record.topic(), record.partition()), record.offset() + 1);
+    }
+
+    private static void writeSnapshot(Path snapshotFile) {
+        try {
+            StateSnapshot.write(snapshotFile, shards, payPeriodsMap, appliedOffsets);
+        } catch (Exception e) {
+            log.warn("Failed to write snapshot {}: {}", snapshotFile, e.getMessage());
         }
-        return null;
     }
 
     /**
-     * Parse an employee-info record and update the in-memory map.
+     * Parse an employee-info record and update the employee info store.
      * The key from ksqlDB EMPLOYEE_INFO table is a JSON string: "employee-id-guid"
+     * The record is routed to a shard by the key, so it is stored under the key's employee ID;
+     * a value whose EMPLOYEE_ID disagrees is skipped. A tombstone removes the employee's row.
+     * @param employeeId the employee ID decoded from the key
+     * @return whether the store changed
      */
-    private static void processEmployeeInfoRecord(ConsumerRecord<String, String> record) throws Exception {
-        if (record.value() == null || record.key() == null) return;
+    private static boolean processEmployeeInfoRecord(ConsumerRecord<String, byte[]> record,
+                                                     String employeeId) throws Exception {
+        if (record.key() == null || employeeId == null) return false;
+        if (record.value() == null) {
+            return shards.infoStore(employeeId).remove(employeeId);
+        }
 
         JsonNode value = mapper.readTree(record.value());
-        String employeeId = value.path("EMPLOYEE_ID").asText(null);
-        if (employeeId == null) {
-            employeeId = extractEmployeeIdFromKey(record.key());
+        String valueEmployeeId = value.path("EMPLOYEE_ID").asText(null);
+        if (valueEmployeeId != null && !valueEmployeeId.equals(employeeId)) {
+            log.warn("Skipping employee-info record at {}-{}@{}: key employee {} but value employee {}",
+                record.topic(), record.partition(), record.offset(), employeeId, valueEmployeeId);
+            return false;
         }
-        if (employeeId == null) return;
 
         EmployeeInfo info = new EmployeeInfo();
         info.setEmployeeId(employeeId);
@@ -252,23 +437,21 @@ public class ElasticsearchUpdaterApp {
         info.setIsActive(value.path("IS_ACTIVE").asText("true"));
         info.setHireDate(value.path("HIRE_DATE").asText(""));
 
-        employeeInfoMap.put(employeeId, info);
+        shards.infoStore(employeeId).put(info);
+        return true;
     }
 
     /**
-     * Parse an employee-net-pay record and update the in-memory TreeMap.
+     * Parse an employee-net-pay record and update the employee's pay period window.
      * Key: {"EMPLOYEE_ID":"...","PAY_PERIOD_NUMBER":55}
      */
-    private static void processNetPayRecord(ConsumerRecord<String, String> record) throws Exception {
-        if (record.key() == null) return;
-
-        JsonNode keyNode = mapper.readTree(record.key());
-        String employeeId = keyNode.path("EMPLOYEE_ID").asText(null);
-        long payPeriodNumber = keyNode.path("PAY_PERIOD_NUMBER").asLong(-1);
+    private static void processNetPayRecord(ConsumerRecord<String, byte[]> record, RecordKey key) throws Exception {
+        String employeeId = key.employeeId();
+        long payPeriodNumber = key.payPeriodNumber();
         if (employeeId == null || payPeriodNumber < 0) return;
 
-        TreeMap<Long, PayPeriodRecord> periods = payPeriodsMap.computeIfAbsent(
-            employeeId, k -> new TreeMap<>());
+        PayPeriodRing periods = payPeriodsMap.computeIfAbsent(
+            employeeId, k -> new PayPeriodRing(MAX_PAY_PERIODS));
 
         if (record.value() == null) {
             // Tombstone — remove this pay period
@@ -295,84 +478,110 @@ public class ElasticsearchUpdaterApp {
         pp.setPayPeriodStart(value.path("PAY_PERIOD_START").asText(""));
         pp.setPayPeriodEnd(value.path("PAY_PERIOD_END").asText(""));
 
-        periods.put(payPeriodNumber, pp);
-
-        // Trim to last N pay periods
-        while (periods.size() > MAX_PAY_PERIODS) {
-            periods.pollFirstEntry();
-        }
+        // Keeps the last N pay periods
+        periods.put(pp);
     }
 
-    private static void handleEmployeeInfo(ConsumerRecord<String, String> record,
-                                            KafkaProducer<String, String> producer) throws Exception {
-        processEmployeeInfoRecord(record);
+    private static void handleEmployeeInfo(ConsumerRecord<String, byte[]> record,
+                                           Map<String, DirtyEmployee> dirty) throws Exception {
+        if (record.key() == null) return;
+        String employeeId = RecordKey.employeeIdOf(record.key());
+        if (!processEmployeeInfoRecord(record, employeeId)) return;
+
+        DirtyEmployee change = dirty.computeIfAbsent(employeeId, k -> new DirtyEmployee());
+        change.lastWasInfo = true;
+        change.infoChanged = true;
+        change.infoRemoved = record.value() == null;
+    }
 
+    private static void handleNetPay(ConsumerRecord<String, byte[]> record,
+                                     Map<String, DirtyEmployee> dirty) throws Exception {
         if (record.key() == null) return;
-        String employeeId = extractEmployeeIdFromKey(record.key());
-        if (employeeId == null && record.value() != null) {
-            JsonNode value = mapper.readTree(record.value());
-            employeeId = value.path("EMPLOYEE_ID").asText(null);
-        }
+
+        // Decoded once and shared with processNetPayRecord
+        RecordKey key = RecordKey.ofNetPay(record.key());
+        String employeeId = key.employeeId();
         if (employeeId == null) return;
 
-        EmployeeInfo info = employeeInfoMap.get(employeeId);
-        if (info != null && "false".equalsIgnoreCase(info.getIsActive())) {
+        processNetPayRecord(record, key);
+        DirtyEmployee change = dirty.computeIfAbsent(employeeId, k -> new DirtyEmployee());
+        change.lastWasInfo = false;
+        if (key.payPeriodNumber() >= 0) {
+            change.touchPeriod(key.payPeriodNumber());
+        }
+    }
+
+    /**
+     * Send the end-of-batch result for one employee: the same document or tombstone the last
+     * record touching it would have produced on its own, or, if the sink supports it and the
+     * document was already sent, a partial update with just what changed.
+     */
+    private static int emitDocument(String employeeId, DirtyEmployee change,
+                                    SearchDocumentSink sink) throws Exception {
+        EmployeeInfoStore employees = shards.infoStore(employeeId);
+        int row = employees.rowOf(employeeId);
+        if (change.lastWasInfo && change.infoRemoved) {
+            // Employee info deleted — its document goes too
+            sink.send(employeeId, null);
+            log.info("Employee info deleted, tombstone sent: {}", employeeId);
+            return 1;
+        }
+        if (change.lastWasInfo && row >= 0 && !employees.isActive(row)) {
             // Deactivated — produce tombstone
-            producer.send(new ProducerRecord<>(EMPLOYEE_SEARCH_TOPIC, employeeId, null));
-            producer.flush();
+            sink.send(employeeId, null);
+            employees.setHasDocument(row, false);
             log.info("Employee deactivated, tombstone sent: {}", employeeId);
-            return;
+            return 1;
         }
 
-        produceSearchDocument(employeeId, producer);
+        if (row >= 0 && sink.supportsPartialUpdates() && employees.hasDocument(row)) {
+            return sendPartialUpdate(employeeId, employees, row, change, sink);
+        }
+        return produceSearchDocument(employeeId, employees, row, sink);
     }
 
-    private static void handleNetPay(ConsumerRecord<String, String> record,
-                                      KafkaProducer<String, String> producer) throws Exception {
-        if (record.key() == null) return;
+    private static int sendPartialUpdate(String employeeId, EmployeeInfoStore employees, int row,
+                                         DirtyEmployee change, SearchDocumentSink sink) throws Exception {
+        if (!change.infoChanged && change.periodCount == 0) return 0;
 
-        JsonNode keyNode = mapper.readTree(record.key());
-        String employeeId = keyNode.path("EMPLOYEE_ID").asText(null);
-        if (employeeId == null) return;
+        byte[] update = SearchDocumentWriter.writeUpdate(employees, row, payPeriodsMap.get(employeeId),
+            change.infoChanged, change.periods, change.periodCount);
+        // Built only if the document turns out to be missing; by then this batch is done with the employee
+        sink.update(employeeId, update, () -> {
+            try {
+                return SearchDocumentWriter.write(employees, row, payPeriodsMap.get(employeeId));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
 
-        processNetPayRecord(record);
-        produceSearchDocument(employeeId, producer);
+        log.debug("Partial update sent: employee={}, header={}, periods={}",
+            employeeId, change.infoChanged, change.periodCount);
+        return 1;
     }
 
     /**
-     * Build combined document from in-memory state and produce to employee-search topic.
+     * Build combined document from in-memory state and send it to the sink.
+     * The send is asynchronous; processBatch flushes once at the end of the batch.
+     * @return 1 if a document was sent, 0 if there is no employee info yet
      */
-    private static void produceSearchDocument(String employeeId,
-                                               KafkaProducer<String, String> producer) throws Exception {
-        EmployeeInfo info = employeeInfoMap.get(employeeId);
-        if (info == null) {
+    private static int produceSearchDocument(String employeeId, EmployeeInfoStore employees, int row,
+                                             SearchDocumentSink sink) throws Exception {
+        if (row < 0) {
             // No employee info yet — skip until we have both pieces
             log.debug("No employee info for {}, skipping search document", employeeId);
-            return;
+            return 0;
         }
 
-        EmployeeSearchDocument doc = new EmployeeSearchDocument();
-        doc.setEmployeeId(employeeId);
-        doc.setFirstName(info.getFirstName());
-        doc.setLastName(info.getLastName());
-        doc.setEmail(info.getEmail());
-        doc.setPayType(info.getPayType());
-        doc.setPayRate(info.getPayRate());
-        doc.setPayPeriodHours(info.getPayPeriodHours());
-        doc.setActive(!"false".equalsIgnoreCase(info.getIsActive()));
-        doc.setHireDate(info.getHireDate());
-
-        TreeMap<Long, PayPeriodRecord> periods = payPeriodsMap.get(employeeId);
-        if (periods != null && !periods.isEmpty()) {
-            doc.setPayPeriods(new ArrayList<>(periods.values()));
-        }
+        PayPeriodRing periods = payPeriodsMap.get(employeeId);
 
-        String value = mapper.writeValueAsString(doc);
-        producer.send(new ProducerRecord<>(EMPLOYEE_SEARCH_TOPIC, employeeId, value));
-        producer.flush();
+        byte[] value = SearchDocumentWriter.write(employees, row, periods);
+        sink.send(employeeId, value);
+        employees.setHasDocument(row, true);
 
-        log.info("Search document produced: employee={}, periods={}",
-            employeeId, doc.getPayPeriods().size());
+        log.debug("Search document sent: employee={}, periods={}",
+            employeeId, periods != null ? periods.size() : 0);
+        return 1;
     }
 
     private static String envOrDefault(String key, String defaultValue) {
@@ -380,8 +589,30 @@ public class ElasticsearchUpdaterApp {
         return value != null ? value : defaultValue;
     }
 
+    /** What one poll batch changed for an employee, collected before its document is emitted. */
+    private static final class DirtyEmployee {
+        boolean lastWasInfo;
+        boolean infoChanged;
+        // The last employee-info record was a tombstone
+        boolean infoRemoved;
+        // Distinct pay period numbers touched by net-pay records
+        long[] periods = new long[2];
+        int periodCount;
+
+        void touchPeriod(long period) {
+            for (int i = 0; i < periodCount; i++) {
+                if (periods[i] == period) return;
+            }
+            if (periodCount == periods.length) {
+                periods = Arrays.copyOf(periods, periodCount * 2);
+            }
+            periods[periodCount++] = period;
+        }
+    }
+
     /**
-     * Simple POJO for employee info from the employee-info topic.
+     * Simple POJO for employee info from the employee-info topic. Only used to move a record
+     * into and out of the EmployeeInfoStore; the store does not keep these objects.
      */
     static class EmployeeInfo {
         private String employeeId;
@@ -0,0 +1,475 @@
+package com.payroll.esupdater;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Off-heap, columnar store of the latest employee info per employee, replacing one
+ * EmployeeInfo object per employee in a heap map.
+ *
+ * Each employee is a row. Rows live in direct-memory blocks of BLOCK_ROWS rows, and each
+ * column is a contiguous run of values within its block:
+ *  - pay rate and hours are doubles
+ *  - active, and whether a full document has been sent, are bits
+ *  - pay type is a dictionary code
+ *  - hire date is an epoch day when it is an ISO date
+ *  - strings (ID, names, email, non-ISO hire dates, overflow pay types, the cached search
+ *    document header) are UTF-8 (segment, offset) references into a shared append-only arena
+ *    of direct-memory segments
+ * The ID -> row index is an open-addressing table in direct memory too. Heap use is
+ * therefore a handful of buffer objects regardless of headcount. Unchanged strings are not
+ * rewritten on update; superseded bytes are reclaimed by compactIfNeeded, which the owning
+ * shard calls between slices rather than on every write.
+ *
+ * A row is removed when its employee-info row is deleted (a tombstone); deactivation is only
+ * a flag. Removal moves the last row into the freed one, so row numbers are only stable until
+ * the next remove. Each worker shard has its own store (see EmployeeShards), so the
+ * synchronized methods are uncontended in the normal case; they guard the occasional access
+ * from another thread.
+ */
+final class EmployeeInfoStore {
+
+    private static final int BLOCK_ROWS = 1 << 14;
+    private static final int MIN_SEGMENT_BYTES = 1 << 20;
+    private static final int MAX_SEGMENT_BYTES = 64 << 20;
+    private static final long COMPACT_MIN_DEAD_BYTES = 16 << 20;
+    private static final int INITIAL_INDEX_SLOTS = 1 << 10;
+    private static final int MAX_PAY_TYPES = 1024;
+
+    // String columns
+    private static final int ID = 0;
+    private static final int FIRST_NAME = 1;
+    private static final int LAST_NAME = 2;
+    private static final int EMAIL = 3;
+    private static final int PAY_TYPE = 4;     // only when not dictionary-encoded
+    private static final int HIRE_DATE = 5;    // only when not an ISO date
+    private static final int HEADER = 6;       // cached search document header, see SearchDocumentWriter
+    private static final int STRING_COLUMNS = 7;
+
+    // Column offsets within a block, in bytes
+    private static final int REF_BASE = 0;
+    private static final int LEN_BASE = REF_BASE + STRING_COLUMNS * BLOCK_ROWS * Long.BYTES;
+    private static final int PAY_RATE_BASE = LEN_BASE + STRING_COLUMNS * BLOCK_ROWS * Integer.BYTES;
+    private static final int HOURS_BASE = PAY_RATE_BASE + BLOCK_ROWS * Double.BYTES;
+    private static final int PAY_TYPE_CODE_BASE = HOURS_BASE + BLOCK_ROWS * Double.BYTES;
+    private static final int HIRE_DAY_BASE = PAY_TYPE_CODE_BASE + BLOCK_ROWS * Integer.BYTES;
+    private static final int FLAGS_BASE = HIRE_DAY_BASE + BLOCK_ROWS * Integer.BYTES;
+    private static final int BLOCK_BYTES = FLAGS_BASE + BLOCK_ROWS;
+
+    private static final int NULL_LENGTH = -1;
+    private static final int PAY_TYPE_NULL = -1;
+    private static final int PAY_TYPE_IN_ARENA = -2;
+    private static final int HIRE_DATE_IN_ARENA = Integer.MIN_VALUE;
+    private static final byte FLAG_ACTIVE = 1;
+    private static final byte FLAG_HAS_DOCUMENT = 2;
+
+    private final List<ByteBuffer> blocks = new ArrayList<>();
+    private int size;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private int segmentFill;
+    private long liveBytes;
+    private long deadBytes;
+
+    // Interleaved (hash, row + 1) pairs; row + 1 == 0 marks an empty slot
+    private ByteBuffer index;
+    private int indexMask;
+
+    private final List<String> payTypes = new ArrayList<>();
+    private final Map<String, Integer> payTypeCodes = new HashMap<>();
+
+    EmployeeInfoStore() {
+        clear();
+    }
+
+    synchronized void clear() {
+        blocks.clear();
+        segments.clear();
+        payTypes.clear();
+        payTypeCodes.clear();
+        size = 0;
+        segmentFill = 0;
+        liveBytes = 0;
+        deadBytes = 0;
+        index = ByteBuffer.allocateDirect(INITIAL_INDEX_SLOTS * 2 * Integer.BYTES);
+        indexMask = INITIAL_INDEX_SLOTS - 1;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /** Direct memory held by blocks, arena and index. */
+    synchronized long offHeapBytes() {
+        long bytes = (long) blocks.size() * BLOCK_BYTES + index.capacity();
+        for (ByteBuffer segment : segments) {
+            bytes += segment.capacity();
+        }
+        return bytes;
+    }
+
+    /** Insert or update the row for info's employee ID; drops its cached search header. */
+    synchronized int put(ElasticsearchUpdaterApp.EmployeeInfo info) {
+        byte[] id = info.getEmployeeId().getBytes(StandardCharsets.UTF_8);
+        int hash = hash(info.getEmployeeId());
+        int row = find(id, hash);
+        if (row < 0) {
+            row = addRow(id, hash);
+        }
+
+        ByteBuffer block = blocks.get(row / BLOCK_ROWS);
+        int r = row % BLOCK_ROWS;
+        setString(block, r, FIRST_NAME, info.getFirstName());
+        setString(block, r, LAST_NAME, info.getLastName());
+        setString(block, r, EMAIL, info.getEmail());
+        block.putDouble(PAY_RATE_BASE + r * Double.BYTES, info.getPayRate());
+        block.putDouble(HOURS_BASE + r * Double.BYTES, info.getPayPeriodHours());
+        byte flags = (byte) (block.get(FLAGS_BASE + r) & ~FLAG_ACTIVE);
+        block.put(FLAGS_BASE + r, "false".equalsIgnoreCase(info.getIsActive()) ? flags : (byte) (flags | FLAG_ACTIVE));
+
+        int payTypeCode = payTypeCode(info.getPayType());
+        block.putInt(PAY_TYPE_CODE_BASE + r * Integer.BYTES, payTypeCode);
+        setString(block, r, PAY_TYPE, payTypeCode == PAY_TYPE_IN_ARENA ? info.getPayType() : null);
+
+        int hireDay = epochDay(info.getHireDate());
+        block.putInt(HIRE_DAY_BASE + r * Integer.BYTES, hireDay);
+        setString(block, r, HIRE_DATE, hireDay == HIRE_DATE_IN_ARENA ? info.getHireDate() : null);
+
+        setBytes(block, r, HEADER, null);
+        return row;
+    }
+
+    /**
+     * Remove the employee's row, if any; the last row moves into its place.
+     * @return whether there was a row
+     */
+    synchronized boolean remove(String employeeId) {
+        int hash = hash(employeeId);
+        int row = find(employeeId.getBytes(StandardCharsets.UTF_8), hash);
+        if (row < 0) return false;
+
+        deleteIndex(hash, row);
+        ByteBuffer block = blocks.get(row / BLOCK_ROWS);
+        int r = row % BLOCK_ROWS;
+        for (int column = 0; column < STRING_COLUMNS; column++) {
+            setBytes(block, r, column, null);
+        }
+
+        int last = size - 1;
+        ByteBuffer lastBlock = blocks.get(last / BLOCK_ROWS);
+        int lastR = last % BLOCK_ROWS;
+        if (row != last) {
+            for (int column = 0; column < STRING_COLUMNS; column++) {
+                block.putLong(refOffset(r, column), lastBlock.getLong(refOffset(lastR, column)));
+                block.putInt(lengthOffset(r, column), lastBlock.getInt(lengthOffset(lastR, column)));
+            }
+            block.putDouble(PAY_RATE_BASE + r * Double.BYTES, lastBlock.getDouble(PAY_RATE_BASE + lastR * Double.BYTES));
+            block.putDouble(HOURS_BASE + r * Double.BYTES, lastBlock.getDouble(HOURS_BASE + lastR * Double.BYTES));
+            block.putInt(PAY_TYPE_CODE_BASE + r * Integer.BYTES, lastBlock.getInt(PAY_TYPE_CODE_BASE + lastR * Integer.BYTES));
+            block.putInt(HIRE_DAY_BASE + r * Integer.BYTES, lastBlock.getInt(HIRE_DAY_BASE + lastR * Integer.BYTES));
+            block.put(FLAGS_BASE + r, lastBlock.get(FLAGS_BASE + lastR));
+            repointIndex(hash(getString(block, r, ID)), last, row);
+        }
+
+        // The moved strings now belong to row; clear last without counting them as dead
+        for (int column = 0; column < STRING_COLUMNS; column++) {
+            lastBlock.putLong(refOffset(lastR, column), 0);
+            lastBlock.putInt(lengthOffset(lastR, column), NULL_LENGTH);
+        }
+        lastBlock.put(FLAGS_BASE + lastR, (byte) 0);
+        size = last;
+        if (size % BLOCK_ROWS == 0) {
+            blocks.remove(blocks.size() - 1);
+        }
+        return true;
+    }
+
+    /** @return the employee's row, or -1 if there is none */
+    synchronized int rowOf(String employeeId) {
+        if (employeeId == null) return -1;
+        int row = find(employeeId.getBytes(StandardCharsets.UTF_8), hash(employeeId));
+        return Math.max(row, -1);
+    }
+
+    synchronized boolean isActive(int row) {
+        return (blocks.get(row / BLOCK_ROWS).get(FLAGS_BASE + row % BLOCK_ROWS) & FLAG_ACTIVE) != 0;
+    }
+
+    /**
+     * Whether a full search document has been sent for the row since the store was cleared,
+     * and not deleted since; partial updates are only sent on top of one. Not persisted.
+     */
+    synchronized boolean hasDocument(int row) {
+        return (blocks.get(row / BLOCK_ROWS).get(FLAGS_BASE + row % BLOCK_ROWS) & FLAG_HAS_DOCUMENT) != 0;
+    }
+
+    synchronized void setHasDocument(int row, boolean hasDocument) {
+        ByteBuffer block = blocks.get(row / BLOCK_ROWS);
+        int offset = FLAGS_BASE + row % BLOCK_ROWS;
+        byte flags = block.get(offset);
+        block.put(offset, (byte) (hasDocument ? flags | FLAG_HAS_DOCUMENT : flags & ~FLAG_HAS_DOCUMENT));
+    }
+
+    /** Decode a row back into an EmployeeInfo; isActive comes back as "true" or "false". */
+    synchronized ElasticsearchUpdaterApp.EmployeeInfo get(int row) {
+        ByteBuffer block = blocks.get(row / BLOCK_ROWS);
+        int r = row % BLOCK_ROWS;
+
+        ElasticsearchUpdaterApp.EmployeeInfo info = new ElasticsearchUpdaterApp.EmployeeInfo();
+        info.setEmployeeId(getString(block, r, ID));
+        info.setFirstName(getString(block, r, FIRST_NAME));
+        info.setLastName(getString(block, r, LAST_NAME));
+        info.setEmail(getString(block, r, EMAIL));
+        info.setPayRate(block.getDouble(PAY_RATE_BASE + r * Double.BYTES));
+        info.setPayPeriodHours(block.getDouble(HOURS_BASE + r * Double.BYTES));
+        info.setIsActive((block.get(FLAGS_BASE + r) & FLAG_ACTIVE) != 0 ? "true" : "false");
+
+        int payTypeCode = block.getInt(PAY_TYPE_CODE_BASE + r * Integer.BYTES);
+        info.setPayType(payTypeCode >= 0 ? payTypes.get(payTypeCode)
+            : payTypeCode == PAY_TYPE_IN_ARENA ? getString(block, r, PAY_TYPE) : null);
+
+        int hireDay = block.getInt(HIRE_DAY_BASE + r * Integer.BYTES);
+        info.setHireDate(hireDay != HIRE_DATE_IN_ARENA ? LocalDate.ofEpochDay(hireDay).toString()
+            : getString(block, r, HIRE_DATE));
+        return info;
+    }
+
+    /** @return the cached search document header of the row, or null */
+    synchronized byte[] searchHeader(int row) {
+        return getBytes(blocks.get(row / BLOCK_ROWS), row % BLOCK_ROWS, HEADER);
+    }
+
+    synchronized void setSearchHeader(int row, byte[] header) {
+        setBytes(blocks.get(row / BLOCK_ROWS), row % BLOCK_ROWS, HEADER, header);
+    }
+
+    /**
+     * Copy every live string into fresh segments once superseded bytes reach COMPACT_MIN_DEAD_BYTES
+     * and outweigh live ones. A pass costs about as much as the live bytes it copies, which is at
+     * most the dead bytes written since the last pass, so it is amortized over those writes.
+     */
+    synchronized void compactIfNeeded() {
+        if (deadBytes < COMPACT_MIN_DEAD_BYTES || deadBytes < liveBytes) return;
+
+        List<ByteBuffer> oldSegments = new ArrayList<>(segments);
+        segments.clear();
+        segmentFill = 0;
+        liveBytes = 0;
+        deadBytes = 0;
+        for (int row = 0; row < size; row++) {
+            ByteBuffer block = blocks.get(row / BLOCK_ROWS);
+            int r = row % BLOCK_ROWS;
+            for (int column = 0; column < STRING_COLUMNS; column++) {
+                int length = block.getInt(lengthOffset(r, column));
+                if (length <= 0) continue;
+                long ref = block.getLong(refOffset(r, column));
+                byte[] bytes = new byte[length];
+                oldSegments.get((int) (ref >>> 32)).get((int) ref, bytes);
+                block.putLong(refOffset(r, column), append(bytes));
+            }
+        }
+    }
+
+    // ---- rows and index ----
+
+    private int addRow(byte[] id, int hash) {
+        if (size % BLOCK_ROWS == 0) {
+            ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_BYTES);
+            for (int r = 0; r < BLOCK_ROWS; r++) {
+                for (int column = 0; column < STRING_COLUMNS; column++) {
+                    block.putInt(lengthOffset(r, column), NULL_LENGTH);
+                }
+            }
+            blocks.add(block);
+        }
+        int row = size++;
+        setBytes(blocks.get(row / BLOCK_ROWS), row % BLOCK_ROWS, ID, id);
+
+        if (size > (indexMask + 1) >>> 1) {
+            resizeIndex((indexMask + 1) << 1);
+        }
+        insertIndex(hash, row);
+        return row;
+    }
+
+    /** @return the row with this ID, or a negative number if there is none */
+    private int find(byte[] id, int hash) {
+        for (int slot = hash & indexMask; ; slot = (slot + 1) & indexMask) {
+            int rowPlusOne = index.getInt(slot * 8 + 4);
+            if (rowPlusOne == 0) return -1;
+            if (index.getInt(slot * 8) == hash && idEquals(rowPlusOne - 1, id)) return rowPlusOne - 1;
+        }
+    }
+
+    private void insertIndex(int hash, int row) {
+        int slot = hash & indexMask;
+        while (index.getInt(slot * 8 + 4) != 0) {
+            slot = (slot + 1) & indexMask;
+        }
+        index.putInt(slot * 8, hash);
+        index.putInt(slot * 8 + 4, row + 1);
+    }
+
+    /** Empty the slot of row and shift later entries of its probe run back into the gap. */
+    private void deleteIndex(int hash, int row) {
+        int hole = hash & indexMask;
+        while (index.getInt(hole * 8 + 4) != row + 1) {
+            hole = (hole + 1) & indexMask;
+        }
+        for (int slot = (hole + 1) & indexMask; index.getInt(slot * 8 + 4) != 0; slot = (slot + 1) & indexMask) {
+            int home = index.getInt(slot * 8) & indexMask;
+            // An entry may move back only if the hole lies on its probe path (home .. slot)
+            boolean onPath = hole <= slot ? home <= hole || home > slot : home <= hole && home > slot;
+            if (onPath) {
+                index.putInt(hole * 8, index.getInt(slot * 8));
+                index.putInt(hole * 8 + 4, index.getInt(slot * 8 + 4));
+                hole = slot;
+            }
+        }
+        index.putInt(hole * 8, 0);
+        index.putInt(hole * 8 + 4, 0);
+    }
+
+    private void repointIndex(int hash, int fromRow, int toRow) {
+        int slot = hash & indexMask;
+        while (index.getInt(slot * 8 + 4) != fromRow + 1) {
+            slot = (slot + 1) & indexMask;
+        }
+        index.putInt(slot * 8 + 4, toRow + 1);
+    }
+
+    private void resizeIndex(int slots) {
+        ByteBuffer old = index;
+        index = ByteBuffer.allocateDirect(slots * 2 * Integer.BYTES);
+        indexMask = slots - 1;
+        for (int slot = 0; slot < old.capacity() / 8; slot++) {
+            int rowPlusOne = old.getInt(slot * 8 + 4);
+            if (rowPlusOne != 0) {
+                insertIndex(old.getInt(slot * 8), rowPlusOne - 1);
+            }
+        }
+    }
+
+    private boolean idEquals(int row, byte[] id) {
+        ByteBuffer block = blocks.get(row / BLOCK_ROWS);
+        int r = row % BLOCK_ROWS;
+        if (block.getInt(lengthOffset(r, ID)) != id.length) return false;
+        long ref = block.getLong(refOffset(r, ID));
+        ByteBuffer segment = segments.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        for (int i = 0; i < id.length; i++) {
+            if (segment.get(offset + i) != id[i]) return false;
+        }
+        return true;
+    }
+
+    private static int hash(String id) {
+        int h = id.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // ---- encodings ----
+
+    private int payTypeCode(String payType) {
+        if (payType == null) return PAY_TYPE_NULL;
+        Integer code = payTypeCodes.get(payType);
+        if (code != null) return code;
+        if (payTypes.size() >= MAX_PAY_TYPES) return PAY_TYPE_IN_ARENA;
+        payTypes.add(payType);
+        payTypeCodes.put(payType, payTypes.size() - 1);
+        return payTypes.size() - 1;
+    }
+
+    /** Epoch day for a date that round-trips through LocalDate (yyyy-MM-dd), else HIRE_DATE_IN_ARENA. */
+    private static int epochDay(String date) {
+        if (date == null || date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return HIRE_DATE_IN_ARENA;
+        }
+        try {
+            LocalDate parsed = LocalDate.parse(date);
+            return parsed.toString().equals(date) ? (int) parsed.toEpochDay() : HIRE_DATE_IN_ARENA;
+        } catch (DateTimeParseException e) {
+            return HIRE_DATE_IN_ARENA;
+        }
+    }
+
+    // ---- string arena ----
+
+    private static int refOffset(int r, int column) {
+        return REF_BASE + (column * BLOCK_ROWS + r) * Long.BYTES;
+    }
+
+    private static int lengthOffset(int r, int column) {
+        return LEN_BASE + (column * BLOCK_ROWS + r) * Integer.BYTES;
+    }
+
+    private void setString(ByteBuffer block, int r, int column, String value) {
+        setBytes(block, r, column, value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    private String getString(ByteBuffer block, int r, int column) {
+        byte[] bytes = getBytes(block, r, column);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    private void setBytes(ByteBuffer block, int r, int column, byte[] value) {
+        int oldLength = block.getInt(lengthOffset(r, column));
+        if (value != null && value.length == oldLength && arenaEquals(block.getLong(refOffset(r, column)), value)) {
+            return; // unchanged, keep the existing bytes
+        }
+        if (oldLength > 0) {
+            liveBytes -= oldLength;
+            deadBytes += oldLength;
+        }
+
+        if (value == null) {
+            block.putLong(refOffset(r, column), 0);
+            block.putInt(lengthOffset(r, column), NULL_LENGTH);
+        } else {
+            block.putLong(refOffset(r, column), value.length > 0 ? append(value) : 0);
+            block.putInt(lengthOffset(r, column), value.length);
+        }
+    }
+
+    private byte[] getBytes(ByteBuffer block, int r, int column) {
+        int length = block.getInt(lengthOffset(r, column));
+        if (length == NULL_LENGTH) return null;
+        byte[] bytes = new byte[length];
+        if (length > 0) {
+            long ref = block.getLong(refOffset(r, column));
+            segments.get((int) (ref >>> 32)).get((int) ref, bytes);
+        }
+        return bytes;
+    }
+
+    private boolean arenaEquals(long ref, byte[] value) {
+        if (value.length == 0) return true;
+        ByteBuffer segment = segments.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        for (int i = 0; i < value.length; i++) {
+            if (segment.get(offset + i) != value[i]) return false;
+        }
+        return true;
+    }
+
+    private long append(byte[] value) {
+        ByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segmentFill + value.length > segment.capacity()) {
+            int capacity = segment == null ? MIN_SEGMENT_BYTES : Math.min(MAX_SEGMENT_BYTES, segment.capacity() * 2);
+            segment = ByteBuffer.allocateDirect(Math.max(capacity, value.length));
+            segments.add(segment);
+            segmentFill = 0;
+        }
+        segment.put(segmentFill, value);
+        long ref = ((long) (segments.size() - 1) << 32) | segmentFill;
+        segmentFill += value.length;
+        liveBytes += value.length;
+        return ref;
+    }
+}
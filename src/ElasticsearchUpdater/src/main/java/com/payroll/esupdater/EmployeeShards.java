@@ -0,0 +1,167 @@
+package com.payroll.esupdater;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed set of worker threads, each owning the employees whose ID hashes to its shard.
+ *
+ * A poll batch is split into one slice per shard, preserving record order within a slice,
+ * and the slices are processed in parallel; run returns once every slice is done, so the
+ * caller can flush and commit the batch as a whole. Since an employee always maps to the
+ * same shard, its entries in the state maps are only ever touched by one thread at a time.
+ * With a single shard everything runs on the calling thread.
+ *
+ * Each shard also has its own EmployeeInfoStore, so workers never wait on each other's store
+ * monitor; the monitor only serializes the rare access from elsewhere, such as the bulk sink
+ * building a fallback document on its HTTP thread. A shard compacts its store after its slice,
+ * so the occasional full arena pass runs on its own worker between slices, not inside a write.
+ */
+final class EmployeeShards implements AutoCloseable {
+
+    interface SliceTask {
+        /** @return a count to be summed across slices */
+        int run(List<ConsumerRecord<String, byte[]>> slice) throws Exception;
+    }
+
+    private final int shardCount;
+    private final ExecutorService executor;
+    private final EmployeeInfoStore[] infoStores;
+
+    EmployeeShards(int shardCount) {
+        this.shardCount = Math.max(1, shardCount);
+        this.infoStores = new EmployeeInfoStore[this.shardCount];
+        for (int i = 0; i < this.shardCount; i++) {
+            infoStores[i] = new EmployeeInfoStore();
+        }
+        if (this.shardCount > 1) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(this.shardCount - 1, r -> {
+                Thread thread = new Thread(r, "es-updater-worker-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.executor = null;
+        }
+    }
+
+    int shardCount() {
+        return shardCount;
+    }
+
+    /** Shard owning an employee; records without an ID go to shard 0. */
+    int shardOf(String employeeId) {
+        if (employeeId == null || shardCount == 1) return 0;
+        return Math.floorMod(employeeId.hashCode(), shardCount);
+    }
+
+    /** Employee info store of the shard owning an employee. */
+    EmployeeInfoStore infoStore(String employeeId) {
+        return infoStores[shardOf(employeeId)];
+    }
+
+    List<EmployeeInfoStore> infoStores() {
+        return List.of(infoStores);
+    }
+
+    /** Employees across all shards' info stores. */
+    int employeeCount() {
+        int count = 0;
+        for (EmployeeInfoStore store : infoStores) {
+            count += store.size();
+        }
+        return count;
+    }
+
+    void clearInfoStores() {
+        for (EmployeeInfoStore store : infoStores) {
+            store.clear();
+        }
+    }
+
+    List<List<ConsumerRecord<String, byte[]>>> newSlices() {
+        List<List<ConsumerRecord<String, byte[]>>> slices = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            slices.add(new ArrayList<>());
+        }
+        return slices;
+    }
+
+    /**
+     * Run the task over every non-empty slice, slice 0 on the calling thread, and wait for all.
+     * Each slice is followed by a compaction check of its shard's info store.
+     * If a slice fails, the others are still waited for before the first failure is rethrown,
+     * since the caller may go on to clear state or close the sink they are using.
+     * @return sum of the task results
+     */
+    int run(List<List<ConsumerRecord<String, byte[]>>> slices, SliceTask task) throws Exception {
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 1; i < slices.size(); i++) {
+            List<ConsumerRecord<String, byte[]>> slice = slices.get(i);
+            EmployeeInfoStore store = infoStores[i];
+            if (!slice.isEmpty()) {
+                futures.add(executor.submit(() -> runSlice(task, slice, store)));
+            }
+        }
+
+        int total = 0;
+        Exception failure = null;
+        try {
+            if (!slices.get(0).isEmpty()) {
+                total = runSlice(task, slices.get(0), infoStores[0]);
+            }
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        boolean interrupted = false;
+        for (Future<Integer> future : futures) {
+            while (true) {
+                try {
+                    total += future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // Keep waiting; the interrupt is restored below
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    if (failure == null) {
+                        failure = cause;
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return total;
+    }
+
+    private static int runSlice(SliceTask task, List<ConsumerRecord<String, byte[]>> slice,
+                                EmployeeInfoStore store) throws Exception {
+        int result = task.run(slice);
+        store.compactIfNeeded();
+        return result;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.payroll.esupdater;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Produces search documents to a topic for the Elasticsearch sink connector; deletes become
+ * tombstones. The connector only indexes whole documents, so updates send the full document.
+ */
+final class KafkaSearchSink implements SearchDocumentSink {
+
+    private final Producer<String, byte[]> producer;
+    private final String topic;
+
+    // First send failure since the last flush, reported by the producer's I/O thread
+    private final AtomicReference<Exception> sendFailure = new AtomicReference<>();
+    private final Callback callback = (metadata, exception) -> {
+        if (exception != null) sendFailure.compareAndSet(null, exception);
+    };
+
+    KafkaSearchSink(Producer<String, byte[]> producer, String topic) {
+        this.producer = producer;
+        this.topic = topic;
+    }
+
+    @Override
+    public void send(String employeeId, byte[] document) {
+        producer.send(new ProducerRecord<>(topic, employeeId, document), callback);
+    }
+
+    @Override
+    public void update(String employeeId, byte[] update, Supplier<byte[]> fullDocument) {
+        send(employeeId, fullDocument.get());
+    }
+
+    @Override
+    public void flush() {
+        producer.flush();
+        Exception failure = sendFailure.getAndSet(null);
+        if (failure != null) {
+            throw new IllegalStateException("Failed to produce to " + topic, failure);
+        }
+    }
+
+    @Override
+    public void close() {
+        producer.close();
+    }
+}
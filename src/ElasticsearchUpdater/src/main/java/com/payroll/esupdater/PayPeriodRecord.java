@@ -1,5 +1,6 @@
 package com.payroll.esupdater;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class PayPeriodRecord {
@@ -52,6 +53,10 @@ public class PayPeriodRecord {
     @JsonProperty("pay_period_end")
     private String payPeriodEnd;
 
+    // Serialized form, cached by SearchDocumentWriter; records are replaced, never mutated, on update
+    @JsonIgnore
+    private byte[] json;
+
     public PayPeriodRecord() {}
 
     public long getPayPeriodNumber() { return payPeriodNumber; }
@@ -101,4 +106,7 @@ public class PayPeriodRecord {
 
     public String getPayPeriodEnd() { return payPeriodEnd; }
     public void setPayPeriodEnd(String payPeriodEnd) { this.payPeriodEnd = payPeriodEnd; }
+
+    byte[] getJson() { return json; }
+    void setJson(byte[] json) { this.json = json; }
 }
@@ -0,0 +1,91 @@
+package com.payroll.esupdater;
+
+/**
+ * The last N pay periods of one employee, sorted by period number, in a fixed-capacity ring.
+ *
+ * Periods normally arrive in order, so put is an append at the tail that overwrites the oldest
+ * slot once full. A late or recomputed period is placed by a short backwards scan and shift.
+ * With the window full, a period older than every retained one is dropped, as it would be
+ * trimmed straight away. Keys are primitive longs, and nothing is allocated after construction.
+ *
+ * Not thread-safe: each ring is only touched by the worker shard owning its employee, and
+ * snapshots read it between batches.
+ */
+final class PayPeriodRing {
+
+    private final long[] periods;
+    private final PayPeriodRecord[] records;
+    private int head;   // slot of the oldest period
+    private int size;
+
+    PayPeriodRing(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+        this.periods = new long[capacity];
+        this.records = new PayPeriodRecord[capacity];
+    }
+
+    /** Insert or replace the record for its pay period, evicting the oldest period if full. */
+    void put(PayPeriodRecord record) {
+        long period = record.getPayPeriodNumber();
+
+        // Position after the last retained period <= period, scanning from the newest
+        int pos = size;
+        while (pos > 0 && periods[slot(pos - 1)] > period) {
+            pos--;
+        }
+        if (pos > 0 && periods[slot(pos - 1)] == period) {
+            records[slot(pos - 1)] = record;
+            return;
+        }
+
+        if (size == periods.length) {
+            if (pos == 0) return; // older than the whole window
+            records[head] = null;
+            head = slot(1);
+            size--;
+            pos--;
+        }
+
+        for (int i = size; i > pos; i--) {
+            periods[slot(i)] = periods[slot(i - 1)];
+            records[slot(i)] = records[slot(i - 1)];
+        }
+        periods[slot(pos)] = period;
+        records[slot(pos)] = record;
+        size++;
+    }
+
+    /** @return true if the period was present */
+    boolean remove(long period) {
+        for (int pos = 0; pos < size; pos++) {
+            if (periods[slot(pos)] == period) {
+                for (int i = pos; i < size - 1; i++) {
+                    periods[slot(i)] = periods[slot(i + 1)];
+                    records[slot(i)] = records[slot(i + 1)];
+                }
+                records[slot(size - 1)] = null;
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** The i-th oldest retained record, 0 &lt;= i &lt; size(). */
+    PayPeriodRecord get(int i) {
+        return records[slot(i)];
+    }
+
+    private int slot(int pos) {
+        int slot = head + pos;
+        return slot < periods.length ? slot : slot - periods.length;
+    }
+}
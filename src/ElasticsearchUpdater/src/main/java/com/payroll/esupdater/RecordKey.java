@@ -0,0 +1,167 @@
+package com.payroll.esupdater;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * Employee ID and pay period number decoded from a record key in a single pass, without
+ * building a JSON tree.
+ *
+ * The two key shapes the topics use are scanned directly: a JSON string (employee-info; ksqlDB
+ * KEY_FORMAT='JSON' with a single key column produces "d0084eb8-...", not an object) and a flat
+ * object such as {"EMPLOYEE_ID":"...","PAY_PERIOD_NUMBER":55} (employee-net-pay). Anything
+ * else, such as escapes, non-integer numbers or nested values, falls back to Jackson with the
+ * same results as before, so the fast path never changes what a key decodes to.
+ */
+final class RecordKey {
+
+    static final long NO_PAY_PERIOD = -1;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final String EMPLOYEE_ID = "EMPLOYEE_ID";
+    private static final String PAY_PERIOD_NUMBER = "PAY_PERIOD_NUMBER";
+
+    private final String employeeId;
+    private final long payPeriodNumber;
+
+    private RecordKey(String employeeId, long payPeriodNumber) {
+        this.employeeId = employeeId;
+        this.payPeriodNumber = payPeriodNumber;
+    }
+
+    /** @return the EMPLOYEE_ID field, or null */
+    String employeeId() {
+        return employeeId;
+    }
+
+    /** @return the PAY_PERIOD_NUMBER field, or NO_PAY_PERIOD */
+    long payPeriodNumber() {
+        return payPeriodNumber;
+    }
+
+    /**
+     * Employee ID from an employee-info key: a JSON string, or an object with EMPLOYEE_ID.
+     * A key that is not JSON is taken as the raw ID, minus any surrounding quotes.
+     */
+    static String employeeIdOf(String rawKey) {
+        if (rawKey == null) return null;
+        int length = rawKey.length();
+        if (length >= 2 && rawKey.charAt(0) == '"' && closingQuote(rawKey, 1) == length - 1) {
+            return rawKey.substring(1, length - 1);
+        }
+        if (length > 0 && rawKey.charAt(0) == '{') {
+            RecordKey key = scanObject(rawKey);
+            if (key != null) return key.employeeId;
+        }
+
+        try {
+            JsonNode key = mapper.readTree(rawKey);
+            if (key.isTextual()) {
+                return key.asText();
+            }
+            // Fallback: JSON object with EMPLOYEE_ID field
+            String id = key.path(EMPLOYEE_ID).asText(null);
+            if (id != null) return id;
+        } catch (Exception e) {
+            // Raw string without JSON wrapping
+            return rawKey.replaceAll("^\"|\"$", "");
+        }
+        return null;
+    }
+
+    /**
+     * Decode an employee-net-pay key, {"EMPLOYEE_ID":"...","PAY_PERIOD_NUMBER":55}.
+     * @throws IOException if the key is not JSON
+     */
+    static RecordKey ofNetPay(String rawKey) throws IOException {
+        if (!rawKey.isEmpty() && rawKey.charAt(0) == '{') {
+            RecordKey key = scanObject(rawKey);
+            if (key != null) return key;
+        }
+        JsonNode key = mapper.readTree(rawKey);
+        return new RecordKey(key.path(EMPLOYEE_ID).asText(null), key.path(PAY_PERIOD_NUMBER).asLong(NO_PAY_PERIOD));
+    }
+
+    /**
+     * Scan a flat JSON object whose values are unescaped strings or integers.
+     * @return its EMPLOYEE_ID and PAY_PERIOD_NUMBER, or null if the key needs the full parser
+     */
+    private static RecordKey scanObject(String s) {
+        int n = s.length();
+        String employeeId = null;
+        long payPeriodNumber = NO_PAY_PERIOD;
+
+        int i = skipWhitespace(s, 1);
+        if (i < n && s.charAt(i) == '}') {
+            return skipWhitespace(s, i + 1) == n ? new RecordKey(null, NO_PAY_PERIOD) : null;
+        }
+        while (true) {
+            if (i >= n || s.charAt(i) != '"') return null;
+            int nameStart = i + 1;
+            int nameEnd = closingQuote(s, nameStart);
+            if (nameEnd < 0) return null;
+            boolean isEmployeeId = isName(s, nameStart, nameEnd, EMPLOYEE_ID);
+            boolean isPayPeriod = isName(s, nameStart, nameEnd, PAY_PERIOD_NUMBER);
+
+            i = skipWhitespace(s, nameEnd + 1);
+            if (i >= n || s.charAt(i) != ':') return null;
+            i = skipWhitespace(s, i + 1);
+            if (i >= n) return null;
+
+            char c = s.charAt(i);
+            if (c == '"') {
+                int end = closingQuote(s, i + 1);
+                if (end < 0 || isPayPeriod) return null;
+                if (isEmployeeId) employeeId = s.substring(i + 1, end);
+                i = end + 1;
+            } else if (c == '-' || (c >= '0' && c <= '9')) {
+                int start = i;
+                if (c == '-') i++;
+                int digitsStart = i;
+                while (i < n && s.charAt(i) >= '0' && s.charAt(i) <= '9') i++;
+                int digits = i - digitsStart;
+                if (digits == 0 || digits > 18 || (digits > 1 && s.charAt(digitsStart) == '0')) return null;
+                if (i < n && (s.charAt(i) == '.' || s.charAt(i) == 'e' || s.charAt(i) == 'E')) return null;
+                if (isEmployeeId) return null;
+                if (isPayPeriod) payPeriodNumber = Long.parseLong(s, start, i, 10);
+            } else {
+                return null;
+            }
+
+            i = skipWhitespace(s, i);
+            if (i >= n) return null;
+            if (s.charAt(i) == ',') {
+                i = skipWhitespace(s, i + 1);
+            } else if (s.charAt(i) == '}') {
+                return skipWhitespace(s, i + 1) == n ? new RecordKey(employeeId, payPeriodNumber) : null;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /** @return index of the quote closing a string starting at from, or -1 if it has escapes or control characters */
+    private static int closingQuote(String s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') return i;
+            if (c == '\\' || c < 0x20) return -1;
+        }
+        return -1;
+    }
+
+    private static boolean isName(String s, int start, int end, String name) {
+        return end - start == name.length() && s.regionMatches(start, name, 0, name.length());
+    }
+
+    private static int skipWhitespace(String s, int i) {
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') break;
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,37 @@
+package com.payroll.esupdater;
+
+import java.util.function.Supplier;
+
+/**
+ * Where search documents go: the employee-search topic (KafkaSearchSink) or Elasticsearch
+ * itself (BulkSearchSink).
+ *
+ * Sends are asynchronous and may come from several worker shards at once. flush waits for
+ * everything sent so far, so the caller can commit the batch's offsets afterwards.
+ */
+interface SearchDocumentSink extends AutoCloseable {
+
+    /** @param document the search document JSON, or null to delete the employee's document */
+    void send(String employeeId, byte[] document);
+
+    /**
+     * Whether update actually sends partial updates. Without them update sends the full
+     * document, so the caller can skip building the partial one.
+     */
+    default boolean supportsPartialUpdates() {
+        return false;
+    }
+
+    /**
+     * Apply a partial update (see SearchDocumentWriter.writeUpdate) to the employee's document,
+     * or index fullDocument instead if the document does not exist. Sinks without partial
+     * updates always send fullDocument.
+     */
+    void update(String employeeId, byte[] update, Supplier<byte[]> fullDocument);
+
+    /** Wait until every send is acknowledged; throws if any failed since the last flush. */
+    void flush() throws Exception;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,149 @@
+package com.payroll.esupdater;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds EmployeeSearchDocument JSON from cached, pre-serialized fragments.
+ *
+ * The employee header (every property except pay_periods) is serialized once per employee-info
+ * update and cached in the EmployeeInfoStore row, which drops it on the next put. Each
+ * PayPeriodRecord is serialized once and cached on the record, which is replaced rather than
+ * mutated when net-pay delivers an update. So a cached fragment never goes stale. A document is
+ * then assembled by splicing the fragments into a per-thread buffer. The output is
+ * byte-for-byte what Jackson produces for the equivalent EmployeeSearchDocument.
+ *
+ * writeUpdate builds the body of a bulk update instead, calling the stored UPDATE_SCRIPT: it
+ * merges the header fields, drops the periods no longer retained and upserts the changed ones,
+ * given the retained period numbers, so only what changed is sent.
+ */
+final class SearchDocumentWriter {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    // pay_periods is the document's last property; the header is everything before its value
+    private static final byte[] EMPTY_PAY_PERIODS_TAIL = "[]}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PAY_PERIODS_KEY = ",\"pay_periods\":".getBytes(StandardCharsets.UTF_8);
+    static final String UPDATE_SCRIPT_ID = "employee-search-delta";
+    static final String UPDATE_SCRIPT =
+        "if (params.doc != null) { ctx._source.putAll(params.doc); }"
+        + " def periods = ctx._source.pay_periods;"
+        + " if (periods == null) { periods = new ArrayList(); ctx._source.pay_periods = periods; }"
+        + " Set retained = new HashSet();"
+        + " for (def n : params.retained) { retained.add(((Number) n).longValue()); }"
+        + " for (def upsert : params.upserts) { retained.remove(((Number) upsert.pay_period_number).longValue()); }"
+        + " periods.removeIf(p -> !retained.contains(((Number) p.pay_period_number).longValue()));"
+        + " periods.addAll(params.upserts);"
+        + " periods.sort((a, b) -> Long.compare(((Number) a.pay_period_number).longValue(),"
+        + " ((Number) b.pay_period_number).longValue()));";
+    private static final byte[] UPDATE_PREFIX = ("{\"script\":{\"id\":\"" + UPDATE_SCRIPT_ID
+        + "\",\"params\":{\"retained\":[").getBytes(StandardCharsets.UTF_8);
+    private static final ThreadLocal<ByteArrayOutputStream> BUFFER =
+        ThreadLocal.withInitial(() -> new ByteArrayOutputStream(4096));
+
+    private SearchDocumentWriter() {}
+
+    /** @param payPeriods the employee's pay periods, or null if there are none */
+    static byte[] write(EmployeeInfoStore employees, int row, PayPeriodRing payPeriods) throws IOException {
+        ByteArrayOutputStream out = BUFFER.get();
+        out.reset();
+        out.write(header(employees, row));
+        out.write('[');
+        int count = payPeriods != null ? payPeriods.size() : 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) out.write(',');
+            out.write(fragment(payPeriods.get(i)));
+        }
+        out.write(']');
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    /**
+     * Body of a scripted bulk update applying one batch's changes to an existing document.
+     * @param includeHeader whether employee info changed, so the header fields are sent
+     * @param periods pay period numbers the batch touched; those still in payPeriods are upserted
+     */
+    static byte[] writeUpdate(EmployeeInfoStore employees, int row, PayPeriodRing payPeriods, boolean includeHeader,
+                              long[] periods, int periodCount) throws IOException {
+        ByteArrayOutputStream out = BUFFER.get();
+        out.reset();
+        out.write(UPDATE_PREFIX);
+        int retained = payPeriods != null ? payPeriods.size() : 0;
+        for (int i = 0; i < retained; i++) {
+            if (i > 0) out.write(',');
+            out.write(Long.toString(payPeriods.get(i).getPayPeriodNumber()).getBytes(StandardCharsets.UTF_8));
+        }
+        out.write(']');
+
+        if (includeHeader) {
+            byte[] header = header(employees, row);
+            int fieldsLength = header.length - PAY_PERIODS_KEY.length;
+            if (!Arrays.equals(header, fieldsLength, header.length, PAY_PERIODS_KEY, 0, PAY_PERIODS_KEY.length)) {
+                throw new IllegalStateException("Unexpected search document header layout");
+            }
+            out.write(",\"doc\":".getBytes(StandardCharsets.UTF_8));
+            out.write(header, 0, fieldsLength);
+            out.write('}');
+        }
+
+        out.write(",\"upserts\":[".getBytes(StandardCharsets.UTF_8));
+        boolean first = true;
+        for (int i = 0; i < retained; i++) {
+            PayPeriodRecord pp = payPeriods.get(i);
+            if (contains(periods, periodCount, pp.getPayPeriodNumber())) {
+                if (!first) out.write(',');
+                out.write(fragment(pp));
+                first = false;
+            }
+        }
+
+        out.write("]}}}".getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private static boolean contains(long[] periods, int count, long period) {
+        for (int i = 0; i < count; i++) {
+            if (periods[i] == period) return true;
+        }
+        return false;
+    }
+
+    private static byte[] header(EmployeeInfoStore employees, int row) throws IOException {
+        byte[] header = employees.searchHeader(row);
+        if (header != null) return header;
+
+        ElasticsearchUpdaterApp.EmployeeInfo info = employees.get(row);
+        EmployeeSearchDocument doc = new EmployeeSearchDocument();
+        doc.setEmployeeId(info.getEmployeeId());
+        doc.setFirstName(info.getFirstName());
+        doc.setLastName(info.getLastName());
+        doc.setEmail(info.getEmail());
+        doc.setPayType(info.getPayType());
+        doc.setPayRate(info.getPayRate());
+        doc.setPayPeriodHours(info.getPayPeriodHours());
+        doc.setActive(!"false".equalsIgnoreCase(info.getIsActive()));
+        doc.setHireDate(info.getHireDate());
+
+        byte[] full = mapper.writeValueAsBytes(doc);
+        int headerLength = full.length - EMPTY_PAY_PERIODS_TAIL.length;
+        if (!Arrays.equals(full, headerLength, full.length, EMPTY_PAY_PERIODS_TAIL, 0, EMPTY_PAY_PERIODS_TAIL.length)) {
+            throw new IllegalStateException("pay_periods is not the last property of EmployeeSearchDocument");
+        }
+        header = Arrays.copyOf(full, headerLength);
+        employees.setSearchHeader(row, header);
+        return header;
+    }
+
+    private static byte[] fragment(PayPeriodRecord pp) throws IOException {
+        byte[] json = pp.getJson();
+        if (json == null) {
+            json = mapper.writeValueAsBytes(pp);
+            pp.setJson(json);
+        }
+        return json;
+    }
+}
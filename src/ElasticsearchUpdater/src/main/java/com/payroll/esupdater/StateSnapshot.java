@@ -0,0 +1,209 @@
+package com.payroll.esupdater;
+
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of the updater's in-memory state (employee info, last pay periods) plus the
+ * offset up to which each input partition has been applied.
+ *
+ * On restart the snapshot is loaded and only the tail of each partition after its snapshot
+ * offset is pre-scanned, instead of both topics from offset zero. The file is written with a
+ * fixed field order to a temp file, synced, then atomically renamed over the previous one, so
+ * a crash mid-write leaves the last complete snapshot in place.
+ */
+final class StateSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(StateSnapshot.class);
+    private static final int MAGIC = 0x45535550; // "ESUP"
+    private static final int VERSION = 1;
+
+    private StateSnapshot() {}
+
+    static void write(Path file,
+                      EmployeeShards shards,
+                      Map<String, PayPeriodRing> payPeriods,
+                      Map<TopicPartition, Long> offsets) throws IOException {
+        long start = System.currentTimeMillis();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        List<EmployeeInfoStore> stores = shards.infoStores();
+        int employeeCount = 0;
+        for (EmployeeInfoStore employees : stores) {
+            employeeCount += employees.size();
+        }
+
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(offsets.size());
+            for (Map.Entry<TopicPartition, Long> e : offsets.entrySet()) {
+                out.writeUTF(e.getKey().topic());
+                out.writeInt(e.getKey().partition());
+                out.writeLong(e.getValue());
+            }
+
+            out.writeInt(employeeCount);
+            for (EmployeeInfoStore employees : stores) {
+                for (int row = 0; row < employees.size(); row++) {
+                    ElasticsearchUpdaterApp.EmployeeInfo info = employees.get(row);
+                    writeString(out, info.getEmployeeId());
+                    writeString(out, info.getFirstName());
+                    writeString(out, info.getLastName());
+                    writeString(out, info.getEmail());
+                    writeString(out, info.getPayType());
+                    out.writeDouble(info.getPayRate());
+                    out.writeDouble(info.getPayPeriodHours());
+                    writeString(out, info.getIsActive());
+                    writeString(out, info.getHireDate());
+                }
+            }
+
+            out.writeInt(payPeriods.size());
+            for (Map.Entry<String, PayPeriodRing> e : payPeriods.entrySet()) {
+                PayPeriodRing periods = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeInt(periods.size());
+                for (int i = 0; i < periods.size(); i++) {
+                    writePayPeriod(out, periods.get(i));
+                }
+            }
+
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        log.info("Snapshot written: {} employees, {} pay period sets, {} partitions, {} bytes in {} ms",
+            employeeCount, payPeriods.size(), offsets.size(), Files.size(file), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Load a snapshot into the shards' (empty) info stores and the map; each employee goes to
+     * the store of the shard owning it, whatever the shard count was at write time.
+     * @return the applied offset per partition, or null if there is no usable snapshot
+     */
+    static Map<TopicPartition, Long> load(Path file,
+                                          EmployeeShards shards,
+                                          Map<String, PayPeriodRing> payPeriods) {
+        if (!Files.exists(file)) {
+            log.info("No snapshot at {}, pre-scanning from the beginning", file);
+            return null;
+        }
+
+        long start = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("Snapshot {} has an unknown format, ignoring it", file);
+                return null;
+            }
+
+            int offsetCount = in.readInt();
+            Map<TopicPartition, Long> offsets = new HashMap<>(offsetCount * 2);
+            for (int i = 0; i < offsetCount; i++) {
+                offsets.put(new TopicPartition(in.readUTF(), in.readInt()), in.readLong());
+            }
+
+            int employeeCount = in.readInt();
+            for (int i = 0; i < employeeCount; i++) {
+                ElasticsearchUpdaterApp.EmployeeInfo info = new ElasticsearchUpdaterApp.EmployeeInfo();
+                info.setEmployeeId(readString(in));
+                info.setFirstName(readString(in));
+                info.setLastName(readString(in));
+                info.setEmail(readString(in));
+                info.setPayType(readString(in));
+                info.setPayRate(in.readDouble());
+                info.setPayPeriodHours(in.readDouble());
+                info.setIsActive(readString(in));
+                info.setHireDate(readString(in));
+                shards.infoStore(info.getEmployeeId()).put(info);
+            }
+
+            int periodSetCount = in.readInt();
+            for (int i = 0; i < periodSetCount; i++) {
+                String employeeId = in.readUTF();
+                int count = in.readInt();
+                // A smaller MAX_PAY_PERIODS than at write time keeps the newest periods
+                PayPeriodRing periods = new PayPeriodRing(ElasticsearchUpdaterApp.MAX_PAY_PERIODS);
+                for (int j = 0; j < count; j++) {
+                    periods.put(readPayPeriod(in));
+                }
+                payPeriods.put(employeeId, periods);
+            }
+
+            log.info("Snapshot loaded: {} employees, {} pay period sets, {} partitions in {} ms",
+                shards.employeeCount(), payPeriods.size(), offsets.size(), System.currentTimeMillis() - start);
+            return offsets;
+        } catch (IOException e) {
+            log.warn("Could not read snapshot {}, pre-scanning from the beginning: {}", file, e.getMessage());
+            shards.clearInfoStores();
+            payPeriods.clear();
+            return null;
+        }
+    }
+
+    private static void writePayPeriod(DataOutputStream out, PayPeriodRecord pp) throws IOException {
+        out.writeLong(pp.getPayPeriodNumber());
+        out.writeDouble(pp.getGrossPay());
+        out.writeDouble(pp.getFederalTax());
+        out.writeDouble(pp.getStateTax());
+        out.writeDouble(pp.getAdditionalFederalWithholding());
+        out.writeDouble(pp.getAdditionalStateWithholding());
+        out.writeDouble(pp.getTotalTax());
+        out.writeDouble(pp.getTotalFixedDeductions());
+        out.writeDouble(pp.getTotalPercentDeductions());
+        out.writeDouble(pp.getTotalDeductions());
+        out.writeDouble(pp.getNetPay());
+        out.writeDouble(pp.getPayRate());
+        writeString(out, pp.getPayType());
+        out.writeDouble(pp.getTotalHoursWorked());
+        writeString(out, pp.getPayPeriodStart());
+        writeString(out, pp.getPayPeriodEnd());
+    }
+
+    private static PayPeriodRecord readPayPeriod(DataInputStream in) throws IOException {
+        PayPeriodRecord pp = new PayPeriodRecord();
+        pp.setPayPeriodNumber(in.readLong());
+        pp.setGrossPay(in.readDouble());
+        pp.setFederalTax(in.readDouble());
+        pp.setStateTax(in.readDouble());
+        pp.setAdditionalFederalWithholding(in.readDouble());
+        pp.setAdditionalStateWithholding(in.readDouble());
+        pp.setTotalTax(in.readDouble());
+        pp.setTotalFixedDeductions(in.readDouble());
+        pp.setTotalPercentDeductions(in.readDouble());
+        pp.setTotalDeductions(in.readDouble());
+        pp.setNetPay(in.readDouble());
+        pp.setPayRate(in.readDouble());
+        pp.setPayType(readString(in));
+        pp.setTotalHoursWorked(in.readDouble());
+        pp.setPayPeriodStart(readString(in));
+        pp.setPayPeriodEnd(readString(in));
+        return pp;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
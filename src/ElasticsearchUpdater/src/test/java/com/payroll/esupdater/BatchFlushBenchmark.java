@@ -0,0 +1,146 @@
+package com.payroll.esupdater;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * processBatch over a poll batch of employee-info and employee-net-pay records, sending to a
+ * KafkaSearchSink whose producer charges FLUSH_COST per flush as a stand-in for the broker
+ * round trip. Flushing once per batch is compared with flushing after every document, as the
+ * updater did before.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="BatchFlushBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchFlushBenchmark {
+
+    private static final int BATCH = 500;
+    private static final long FLUSH_COST_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private MockProducer<String, byte[]> producer;
+    private SearchDocumentSink batchSink;
+    private SearchDocumentSink perSendSink;
+    private ConsumerRecords<String, byte[]> records;
+
+    @Setup
+    public void setUp() {
+        producer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer()) {
+            @Override
+            public synchronized void flush() {
+                LockSupport.parkNanos(FLUSH_COST_NANOS);
+                super.flush();
+            }
+        };
+        batchSink = new KafkaSearchSink(producer, "employee-search");
+        perSendSink = new FlushEverySend(batchSink);
+
+        List<ConsumerRecord<String, byte[]>> info = new ArrayList<>();
+        List<ConsumerRecord<String, byte[]>> netPay = new ArrayList<>();
+        for (int i = 0; i < BATCH / 2; i++) {
+            String employeeId = "employee-" + i;
+            info.add(new ConsumerRecord<>(ElasticsearchUpdaterApp.EMPLOYEE_INFO_TOPIC, 0, i,
+                "\"" + employeeId + "\"", bytes("{\"EMPLOYEE_ID\":\"" + employeeId + "\",\"FIRST_NAME\":\"Ada\","
+                    + "\"LAST_NAME\":\"Lovelace\",\"EMAIL\":\"ada@example.com\",\"PAY_TYPE\":\"Hourly\","
+                    + "\"PAY_RATE\":32.5,\"PAY_PERIOD_HOURS\":80,\"IS_ACTIVE\":\"true\",\"HIRE_DATE\":\"2020-03-15\"}")));
+            netPay.add(new ConsumerRecord<>(ElasticsearchUpdaterApp.EMPLOYEE_NET_PAY_TOPIC, 0, i,
+                "{\"EMPLOYEE_ID\":\"" + employeeId + "\",\"PAY_PERIOD_NUMBER\":55}",
+                bytes("{\"GROSS_PAY\":2600.0,\"FEDERAL_TAX\":260.5,\"STATE_TAX\":120.9,\"TOTAL_TAX\":416.4,"
+                    + "\"TOTAL_DEDUCTIONS\":294.5,\"NET_PAY\":1889.1,\"PAY_RATE\":32.5,\"PAY_TYPE\":\"Hourly\","
+                    + "\"TOTAL_HOURS_WORKED\":80.0,\"PAY_PERIOD_START\":\"2024-01-01\",\"PAY_PERIOD_END\":\"2024-01-14\"}")));
+        }
+        records = new ConsumerRecords<>(Map.of(
+            new TopicPartition(ElasticsearchUpdaterApp.EMPLOYEE_INFO_TOPIC, 0), info,
+            new TopicPartition(ElasticsearchUpdaterApp.EMPLOYEE_NET_PAY_TOPIC, 0), netPay));
+    }
+
+    @TearDown
+    public void tearDown() {
+        batchSink.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int flushPerBatch() throws Exception {
+        producer.clear();
+        return ElasticsearchUpdaterApp.processBatch(records, batchSink);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int flushPerSend() throws Exception {
+        producer.clear();
+        return ElasticsearchUpdaterApp.processBatch(records, perSendSink);
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** The old behaviour: every document waits for its own round trip. */
+    private static final class FlushEverySend implements SearchDocumentSink {
+        private final SearchDocumentSink sink;
+
+        FlushEverySend(SearchDocumentSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void send(String employeeId, byte[] document) {
+            sink.send(employeeId, document);
+            flushQuietly();
+        }
+
+        @Override
+        public void update(String employeeId, byte[] update, Supplier<byte[]> fullDocument) {
+            sink.update(employeeId, update, fullDocument);
+            flushQuietly();
+        }
+
+        @Override
+        public void flush() throws Exception {
+            sink.flush();
+        }
+
+        @Override
+        public void close() {
+            sink.close();
+        }
+
+        private void flushQuietly() {
+            try {
+                sink.flush();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.payroll.esupdater;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BulkSearchSink against a stub Elasticsearch endpoint that answers each _bulk request with a
+ * scripted response.
+ */
+class BulkSearchSinkTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /** A scripted answer to one _bulk request. */
+    private interface Responder {
+        Response respond(int requestNumber, List<JsonNode> actions) throws Exception;
+    }
+
+    private record Response(int status, String body) {}
+
+    private HttpServer server;
+    private final List<List<JsonNode>> bulkRequests = new CopyOnWriteArrayList<>();
+    private final List<String> otherRequests = new CopyOnWriteArrayList<>();
+    private volatile Responder responder = (n, actions) -> ok(actions.size());
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Response response;
+        try {
+            if (exchange.getRequestURI().getPath().equals("/_bulk")) {
+                List<JsonNode> lines = new ArrayList<>();
+                for (String line : body.split("\n")) {
+                    if (!line.isEmpty()) lines.add(mapper.readTree(line));
+                }
+                List<JsonNode> actions = actionLines(lines);
+                bulkRequests.add(lines);
+                response = responder.respond(bulkRequests.size(), actions);
+            } else {
+                otherRequests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+                response = new Response(200, "{\"acknowledged\":true}");
+            }
+        } catch (Exception e) {
+            response = new Response(500, "{\"error\":\"" + e + "\"}");
+        }
+        byte[] bytes = response.body().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status(), bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private BulkSearchSink sink(boolean partialUpdates, int maxActions, long lingerMs, int maxInFlight) {
+        return new BulkSearchSink("http://127.0.0.1:" + server.getAddress().getPort(), "employee-search",
+            partialUpdates, maxActions, 5 * 1024 * 1024, lingerMs, maxInFlight, 3, 1, 5_000);
+    }
+
+    @Test
+    void retriesWholeRequestOnRetryableStatus() throws Exception {
+        for (int status : new int[] {429, 502, 503, 504}) {
+            bulkRequests.clear();
+            responder = (n, actions) -> n == 1 ? new Response(status, "{}") : ok(actions.size());
+            BulkSearchSink sink = sink(false, 1000, 60_000, 2);
+            sink.send("e1", doc("e1"));
+            sink.send("e2", null);
+            sink.flush();
+            sink.close();
+
+            assertEquals(2, bulkRequests.size(), "requests for HTTP " + status);
+            assertEquals(bulkRequests.get(0), bulkRequests.get(1));
+        }
+    }
+
+    @Test
+    void failsFlushWhenRetriesRunOut() {
+        responder = (n, actions) -> new Response(429, "{}");
+        BulkSearchSink sink = sink(false, 1000, 60_000, 2);
+        sink.send("e1", doc("e1"));
+
+        assertThrows(IllegalStateException.class, sink::flush);
+        assertEquals(4, bulkRequests.size()); // first attempt plus 3 retries
+        sink.close();
+    }
+
+    @Test
+    void resendsOnlyRejectedItems() throws Exception {
+        responder = (n, actions) -> n == 1
+            ? items(actions, 201, 429, 201, 503)
+            : ok(actions.size());
+        BulkSearchSink sink = sink(false, 1000, 60_000, 2);
+        for (String id : List.of("e1", "e2", "e3", "e4")) {
+            sink.send(id, doc(id));
+        }
+        sink.flush();
+        sink.close();
+
+        assertEquals(2, bulkRequests.size());
+        assertEquals(List.of("e2", "e4"), ids(actionLines(bulkRequests.get(1))));
+    }
+
+    @Test
+    void failsFlushOnNonRetryableItemAndIgnoresMissingDelete() {
+        responder = (n, actions) -> items(actions, 404, 400);
+        BulkSearchSink sink = sink(false, 1000, 60_000, 2);
+        sink.send("gone", null);
+        sink.send("bad", doc("bad"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, sink::flush);
+        assertTrue(e.getCause().getMessage().contains("400"), e.getCause().getMessage());
+        assertEquals(1, bulkRequests.size());
+        sink.close();
+    }
+
+    @Test
+    void missingDocumentForPartialUpdateFallsBackToIndex() throws Exception {
+        responder = (n, actions) -> n == 1 ? items(actions, 404, 200) : ok(actions.size());
+        BulkSearchSink sink = sink(true, 1000, 60_000, 2);
+        sink.start();
+        assertEquals(List.of("PUT /_scripts/" + SearchDocumentWriter.UPDATE_SCRIPT_ID), otherRequests);
+
+        sink.update("e1", "{\"script\":{}}".getBytes(StandardCharsets.UTF_8), () -> doc("e1"));
+        sink.update("e2", "{\"script\":{}}".getBytes(StandardCharsets.UTF_8), () -> doc("e2"));
+        sink.flush();
+        sink.close();
+
+        assertEquals(2, bulkRequests.size());
+        List<JsonNode> retry = bulkRequests.get(1);
+        assertEquals(2, retry.size());
+        assertEquals("e1", retry.get(0).path("index").path("_id").asText());
+        assertEquals("e1", retry.get(1).path("id").asText());
+    }
+
+    @Test
+    void flushWaitsForLingeringBatch() throws Exception {
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        AtomicInteger acknowledged = new AtomicInteger();
+        responder = (n, actions) -> {
+            if (n == 1) releaseFirst.await(10, TimeUnit.SECONDS);
+            acknowledged.addAndGet(actions.size());
+            return ok(actions.size());
+        };
+        BulkSearchSink sink = sink(false, 1000, 5, 1);
+        sink.send("e1", doc("e1"));
+        // The linger timer sends e1, then takes e2 and blocks on the only request slot
+        waitFor(() -> bulkRequests.size() == 1);
+        sink.send("e2", doc("e2"));
+        Thread.sleep(50);
+
+        Thread releaser = new Thread(() -> {
+            sleepQuietly(100);
+            releaseFirst.countDown();
+        });
+        releaser.start();
+        sink.flush();
+
+        assertEquals(2, acknowledged.get(), "flush returned before the lingering batch was acknowledged");
+        releaser.join();
+        sink.close();
+    }
+
+    @Test
+    void closeFlushesBufferedActions() {
+        BulkSearchSink sink = sink(false, 1000, 60_000, 2);
+        sink.send("e1", doc("e1"));
+        sink.close();
+
+        assertEquals(1, bulkRequests.size());
+        assertEquals(List.of("e1"), ids(actionLines(bulkRequests.get(0))));
+    }
+
+    @Test
+    void escapesIndexNameInActionLines() throws Exception {
+        BulkSearchSink sink = new BulkSearchSink("http://127.0.0.1:" + server.getAddress().getPort(),
+            "odd\"index\\", false, 1000, 5 * 1024 * 1024, 60_000, 2, 3, 1, 5_000);
+        sink.send("e\"1", doc("e1"));
+        sink.flush();
+        sink.close();
+
+        JsonNode meta = bulkRequests.get(0).get(0).path("index");
+        assertEquals("odd\"index\\", meta.path("_index").asText());
+        assertEquals("e\"1", meta.path("_id").asText());
+    }
+
+    private static byte[] doc(String id) {
+        return ("{\"id\":\"" + id + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** The action metadata lines of a request (each followed by a source line unless a delete). */
+    private static List<JsonNode> actionLines(List<JsonNode> lines) {
+        List<JsonNode> actions = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            JsonNode line = lines.get(i);
+            actions.add(line);
+            if (!line.has("delete")) i++;
+        }
+        return actions;
+    }
+
+    private static List<String> ids(List<JsonNode> actions) {
+        List<String> ids = new ArrayList<>();
+        for (JsonNode action : actions) {
+            ids.add(action.elements().next().path("_id").asText());
+        }
+        return ids;
+    }
+
+    private static Response ok(int count) {
+        int[] statuses = new int[count];
+        Arrays.fill(statuses, 201);
+        return new Response(200, itemsBody(false, statuses));
+    }
+
+    private static Response items(List<JsonNode> actions, int... statuses) {
+        assertEquals(actions.size(), statuses.length);
+        return new Response(200, itemsBody(true, statuses));
+    }
+
+    private static String itemsBody(boolean errors, int... statuses) {
+        StringBuilder body = new StringBuilder("{\"errors\":" + errors + ",\"items\":[");
+        for (int i = 0; i < statuses.length; i++) {
+            if (i > 0) body.append(',');
+            body.append("{\"op\":{\"status\":").append(statuses[i]);
+            if (statuses[i] >= 300) body.append(",\"error\":{\"type\":\"stub\"}");
+            body.append("}}");
+        }
+        return body.append("]}").toString();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) throw new AssertionError("condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.payroll.esupdater;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmployeeInfoStoreTest {
+
+    // More than two 16384-row blocks; the names alone outgrow the first 1 MB arena segment
+    private static final int EMPLOYEES = 40_000;
+
+    @Test
+    void roundTripsRowsAcrossBlocksAndSegments() {
+        EmployeeInfoStore store = new EmployeeInfoStore();
+        for (int i = 0; i < EMPLOYEES; i++) {
+            assertEquals(i, store.put(info(i, "v1")));
+        }
+
+        assertEquals(EMPLOYEES, store.size());
+        for (int i = 0; i < EMPLOYEES; i++) {
+            int row = store.rowOf(id(i));
+            assertEquals(i, row);
+            assertInfo(i, "v1", store.get(row));
+        }
+        assertEquals(-1, store.rowOf("missing"));
+    }
+
+    @Test
+    void keepsOddValuesOutOfTheFixedColumns() {
+        EmployeeInfoStore store = new EmployeeInfoStore();
+        ElasticsearchUpdaterApp.EmployeeInfo info = info(1, "v1");
+        info.setHireDate("03/15/2021");
+        info.setIsActive("false");
+        info.setFirstName("Zo\u00eb");
+        info.setEmail(null);
+        int row = store.put(info);
+
+        ElasticsearchUpdaterApp.EmployeeInfo read = store.get(row);
+        assertEquals("03/15/2021", read.getHireDate());
+        assertEquals("false", read.getIsActive());
+        assertEquals("Zo\u00eb", read.getFirstName());
+        assertNull(read.getEmail());
+        assertFalse(store.isActive(row));
+    }
+
+    @Test
+    void compactsOnlyWhenAskedAndKeepsLiveStrings() {
+        EmployeeInfoStore store = new EmployeeInfoStore();
+        for (int i = 0; i < EMPLOYEES; i++) {
+            store.put(info(i, "v1"));
+        }
+        // Rewrite the cached headers until superseded bytes far outweigh live ones
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < EMPLOYEES; i++) {
+                store.setSearchHeader(i, header(i, round));
+            }
+        }
+        long before = store.offHeapBytes();
+
+        store.compactIfNeeded();
+
+        long after = store.offHeapBytes();
+        assertTrue(after < before / 2, "off-heap bytes " + before + " -> " + after);
+        for (int i = 0; i < EMPLOYEES; i++) {
+            assertInfo(i, "v1", store.get(i));
+            assertArrayEquals(header(i, 3), store.searchHeader(i));
+        }
+
+        // Nothing superseded since, so a second call leaves the arena alone
+        store.compactIfNeeded();
+        assertEquals(after, store.offHeapBytes());
+    }
+
+    @Test
+    void putDropsCachedHeaderAndKeepsUnchangedStrings() {
+        EmployeeInfoStore store = new EmployeeInfoStore();
+        int row = store.put(info(7, "v1"));
+        store.setSearchHeader(row, header(7, 0));
+        store.setHasDocument(row, true);
+        long bytes = store.offHeapBytes();
+
+        assertEquals(row, store.put(info(7, "v1")));
+        assertNull(store.searchHeader(row));
+        assertTrue(store.hasDocument(row));
+        assertEquals(bytes, store.offHeapBytes());
+    }
+
+    @Test
+    void removeMovesLastRowAndFreesEmptyBlocks() {
+        EmployeeInfoStore store = new EmployeeInfoStore();
+        for (int i = 0; i < EMPLOYEES; i++) {
+            store.put(info(i, "v1"));
+        }
+        store.setHasDocument(EMPLOYEES - 1, true);
+        long full = store.offHeapBytes();
+
+        assertTrue(store.remove(id(5)));
+        assertFalse(store.remove(id(5)));
+        assertEquals(-1, store.rowOf(id(5)));
+        // The last row took the freed slot, flags and all
+        assertEquals(5, store.rowOf(id(EMPLOYEES - 1)));
+        assertInfo(EMPLOYEES - 1, "v1", store.get(5));
+        assertTrue(store.hasDocument(5));
+
+        // Remove everything past the first block, lowest rows first so rows keep moving
+        for (int i = 16_384; i < EMPLOYEES - 1; i++) {
+            assertTrue(store.remove(id(i)), id(i));
+        }
+        assertTrue(store.remove(id(EMPLOYEES - 1)));
+        assertEquals(16_383, store.size());
+        assertTrue(store.offHeapBytes() < full);
+
+        boolean[] seen = new boolean[store.size()];
+        for (int i = 0; i < 16_384; i++) {
+            int row = store.rowOf(id(i));
+            if (i == 5) {
+                assertEquals(-1, row);
+                continue;
+            }
+            assertTrue(row >= 0 && row < store.size(), id(i) + " at row " + row);
+            assertFalse(seen[row]);
+            seen[row] = true;
+            assertInfo(i, "v1", store.get(row));
+        }
+
+        // Rows freed by remove are reused cleanly
+        int row = store.put(info(5, "v2"));
+        assertEquals(16_383, row);
+        assertInfo(5, "v2", store.get(row));
+        assertFalse(store.hasDocument(row));
+        assertNull(store.searchHeader(row));
+    }
+
+    @Test
+    void indexFindsEveryRowAfterManyRemoves() {
+        EmployeeInfoStore store = new EmployeeInfoStore();
+        for (int i = 0; i < 5_000; i++) {
+            store.put(info(i, "v1"));
+        }
+        // Every third employee goes, which breaks up the index's probe runs
+        for (int i = 0; i < 5_000; i += 3) {
+            assertTrue(store.remove(id(i)));
+        }
+        for (int i = 0; i < 5_000; i++) {
+            int row = store.rowOf(id(i));
+            if (i % 3 == 0) {
+                assertEquals(-1, row, id(i));
+            } else {
+                assertEquals(id(i), store.get(row).getEmployeeId());
+            }
+        }
+    }
+
+    private static String id(int i) {
+        return "employee-" + i;
+    }
+
+    private static ElasticsearchUpdaterApp.EmployeeInfo info(int i, String version) {
+        ElasticsearchUpdaterApp.EmployeeInfo info = new ElasticsearchUpdaterApp.EmployeeInfo();
+        info.setEmployeeId(id(i));
+        info.setFirstName("First-" + version + "-" + i);
+        info.setLastName("Last-" + version + "-" + i);
+        info.setEmail("employee" + i + "@example.com");
+        info.setPayType(i % 2 == 0 ? "Hourly" : "Salary");
+        info.setPayRate(20 + i * 0.01);
+        info.setPayPeriodHours(80);
+        info.setIsActive("true");
+        info.setHireDate(LocalDate.ofEpochDay(18_000 + i % 1000).toString());
+        return info;
+    }
+
+    private static void assertInfo(int i, String version, ElasticsearchUpdaterApp.EmployeeInfo read) {
+        ElasticsearchUpdaterApp.EmployeeInfo expected = info(i, version);
+        assertEquals(expected.getEmployeeId(), read.getEmployeeId());
+        assertEquals(expected.getFirstName(), read.getFirstName());
+        assertEquals(expected.getLastName(), read.getLastName());
+        assertEquals(expected.getEmail(), read.getEmail());
+        assertEquals(expected.getPayType(), read.getPayType());
+        assertEquals(expected.getPayRate(), read.getPayRate());
+        assertEquals(expected.getPayPeriodHours(), read.getPayPeriodHours());
+        assertEquals("true", read.getIsActive());
+        assertEquals(expected.getHireDate(), read.getHireDate());
+    }
+
+    private static byte[] header(int i, int round) {
+        byte[] header = new byte[200];
+        Arrays.fill(header, (byte) ('a' + round));
+        byte[] id = id(i).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(id, 0, header, 0, id.length);
+        return header;
+    }
+}
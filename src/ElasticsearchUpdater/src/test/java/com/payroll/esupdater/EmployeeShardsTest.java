@@ -0,0 +1,118 @@
+package com.payroll.esupdater;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmployeeShardsTest {
+
+    @Test
+    void runsEachSliceInOrderOnItsOwnThreadAndSumsResults() throws Exception {
+        try (EmployeeShards shards = new EmployeeShards(4)) {
+            List<List<ConsumerRecord<String, byte[]>>> slices = shards.newSlices();
+            List<List<Long>> expected = new ArrayList<>();
+            for (int shard = 0; shard < 4; shard++) {
+                expected.add(new ArrayList<>());
+            }
+            for (long offset = 0; offset < 1000; offset++) {
+                String employeeId = "employee-" + offset % 37;
+                int shard = shards.shardOf(employeeId);
+                slices.get(shard).add(new ConsumerRecord<>("employee-info", 0, offset, employeeId, null));
+                expected.get(shard).add(offset);
+            }
+
+            Map<Integer, List<Long>> seen = new ConcurrentHashMap<>();
+            Map<Integer, Thread> threads = new ConcurrentHashMap<>();
+            Thread caller = Thread.currentThread();
+            int total = shards.run(slices, slice -> {
+                int shard = shards.shardOf(slice.get(0).key());
+                threads.put(shard, Thread.currentThread());
+                List<Long> offsets = new ArrayList<>();
+                for (ConsumerRecord<String, byte[]> record : slice) {
+                    assertEquals(shard, shards.shardOf(record.key()));
+                    offsets.add(record.offset());
+                }
+                seen.put(shard, offsets);
+                return slice.size();
+            });
+
+            assertEquals(1000, total);
+            for (int shard = 0; shard < 4; shard++) {
+                if (!expected.get(shard).isEmpty()) {
+                    assertEquals(expected.get(shard), seen.get(shard), "shard " + shard);
+                }
+            }
+            assertSame(caller, threads.get(0));
+            for (int shard = 1; shard < 4; shard++) {
+                if (threads.containsKey(shard)) {
+                    assertNotEquals(caller, threads.get(shard));
+                }
+            }
+        }
+    }
+
+    @Test
+    void waitsForEverySliceBeforeRethrowingTheFirstFailure() throws Exception {
+        try (EmployeeShards shards = new EmployeeShards(3)) {
+            List<List<ConsumerRecord<String, byte[]>>> slices = shards.newSlices();
+            for (int shard = 0; shard < 3; shard++) {
+                slices.get(shard).add(new ConsumerRecord<>("employee-info", 0, shard, "shard-" + shard, null));
+            }
+
+            CountDownLatch slowStarted = new CountDownLatch(1);
+            AtomicBoolean slowFinished = new AtomicBoolean();
+            IllegalStateException failure = new IllegalStateException("slice 0 failed");
+            Exception thrown = assertThrows(Exception.class, () -> shards.run(slices, slice -> {
+                switch ((int) slice.get(0).offset()) {
+                    case 0 -> {
+                        // Fail on the calling thread only once the slow worker is under way
+                        assertTrue(slowStarted.await(10, TimeUnit.SECONDS));
+                        throw failure;
+                    }
+                    case 1 -> {
+                        slowStarted.countDown();
+                        Thread.sleep(200);
+                        slowFinished.set(true);
+                        return 1;
+                    }
+                    default -> throw new IllegalArgumentException("slice 2 failed");
+                }
+            }));
+
+            assertSame(failure, thrown);
+            assertTrue(slowFinished.get(), "run returned while a slice was still running");
+            assertEquals(1, thrown.getSuppressed().length);
+            assertEquals("slice 2 failed", thrown.getSuppressed()[0].getMessage());
+        }
+    }
+
+    @Test
+    void singleShardRunsOnCallingThread() throws Exception {
+        try (EmployeeShards shards = new EmployeeShards(1)) {
+            List<List<ConsumerRecord<String, byte[]>>> slices = shards.newSlices();
+            assertEquals(1, slices.size());
+            slices.get(0).add(new ConsumerRecord<>("employee-info", 0, 0, "e1", null));
+
+            Thread caller = Thread.currentThread();
+            assertEquals(1, shards.run(slices, slice -> {
+                assertSame(caller, Thread.currentThread());
+                return slice.size();
+            }));
+            assertEquals(0, shards.shardOf("e1"));
+            assertEquals(0, shards.shardOf(null));
+        }
+    }
+}
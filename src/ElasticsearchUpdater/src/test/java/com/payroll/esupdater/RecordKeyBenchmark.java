@@ -0,0 +1,84 @@
+package com.payroll.esupdater;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding employee-info and employee-net-pay keys with RecordKey against the original Jackson
+ * tree decoding, which parsed each net-pay key twice (handleNetPay and processNetPayRecord).
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="RecordKeyBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecordKeyBenchmark {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final int KEYS = 1 << 12;
+
+    private final String[] infoKeys = new String[KEYS];
+    private final String[] netPayKeys = new String[KEYS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < KEYS; i++) {
+            String employeeId = new UUID(random.nextLong(), random.nextLong()).toString();
+            infoKeys[i] = "\"" + employeeId + "\"";
+            netPayKeys[i] = "{\"EMPLOYEE_ID\":\"" + employeeId + "\",\"PAY_PERIOD_NUMBER\":" + (1 + random.nextInt(60)) + "}";
+        }
+    }
+
+    @Benchmark
+    public String infoKeyScan() {
+        return RecordKey.employeeIdOf(infoKeys[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public String infoKeyTree() {
+        String rawKey = infoKeys[next++ & (KEYS - 1)];
+        try {
+            JsonNode key = mapper.readTree(rawKey);
+            if (key.isTextual()) return key.asText();
+            return key.path("EMPLOYEE_ID").asText(null);
+        } catch (Exception e) {
+            return rawKey.replaceAll("^\"|\"$", "");
+        }
+    }
+
+    @Benchmark
+    public void netPayKeyScan(Blackhole blackhole) throws Exception {
+        RecordKey key = RecordKey.ofNetPay(netPayKeys[next++ & (KEYS - 1)]);
+        blackhole.consume(key.employeeId());
+        blackhole.consume(key.payPeriodNumber());
+    }
+
+    @Benchmark
+    public void netPayKeyTreeTwice(Blackhole blackhole) throws Exception {
+        String rawKey = netPayKeys[next++ & (KEYS - 1)];
+        blackhole.consume(mapper.readTree(rawKey).path("EMPLOYEE_ID").asText(null));
+        JsonNode keyNode = mapper.readTree(rawKey);
+        blackhole.consume(keyNode.path("EMPLOYEE_ID").asText(null));
+        blackhole.consume(keyNode.path("PAY_PERIOD_NUMBER").asLong(-1));
+    }
+}
@@ -0,0 +1,148 @@
+package com.payroll.netpay;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Tracks the startup replay of a rebuild, so NetPayProcessor can hold back the intermediate
+ * results of historical events and emit one final result per employee/period instead.
+ *
+ * End offsets of the source topics are captured before Kafka Streams starts. A background
+ * thread then watches the application's committed offsets: once the sources reach their
+ * captured end, the repartition topics' end offsets are captured and waited for in turn,
+ * so every replayed record has been applied to the stores. After that the monitor reports
+ * live mode. If offsets cannot be read, it gives up and reports live mode rather than
+ * suppressing output indefinitely.
+ */
+final class CatchUpMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(CatchUpMonitor.class);
+    private static final long POLL_INTERVAL_MS = 1_000;
+    private static final int MAX_CONSECUTIVE_FAILURES = 30;
+
+    private final String appId;
+    private final String bootstrapServers;
+    private final List<String> repartitionTopics;
+    private volatile boolean catchingUp;
+    private Thread thread;
+
+    private CatchUpMonitor(String appId, String bootstrapServers, List<String> repartitionTopics, boolean catchingUp) {
+        this.appId = appId;
+        this.bootstrapServers = bootstrapServers;
+        this.repartitionTopics = repartitionTopics;
+        this.catchingUp = catchingUp;
+    }
+
+    /** A monitor that is already in live mode (normal restart). */
+    static CatchUpMonitor live() {
+        return new CatchUpMonitor(null, null, List.of(), false);
+    }
+
+    /**
+     * Capture the source topics' end offsets and start watching the consumer group.
+     * Call before KafkaStreams.start(), after the consumer group has been reset.
+     */
+    static CatchUpMonitor start(String appId, String bootstrapServers,
+                                List<String> sourceTopics, List<String> repartitionTopics) {
+        CatchUpMonitor monitor = new CatchUpMonitor(appId, bootstrapServers, repartitionTopics, true);
+        Map<TopicPartition, Long> sourceEnds;
+        try (AdminClient admin = monitor.createAdmin()) {
+            sourceEnds = endOffsets(admin, sourceTopics);
+        } catch (Exception e) {
+            log.warn("Could not capture end offsets, skipping catch-up mode: {}", e.getMessage());
+            return live();
+        }
+
+        log.info("Catch-up mode: suppressing intermediate results until {} reach {}", sourceTopics, sourceEnds);
+        monitor.thread = new Thread(() -> monitor.run(sourceEnds), "net-pay-catch-up-monitor");
+        monitor.thread.setDaemon(true);
+        monitor.thread.start();
+        return monitor;
+    }
+
+    boolean isCatchingUp() {
+        return catchingUp;
+    }
+
+    void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run(Map<TopicPartition, Long> sourceEnds) {
+        long startedAt = System.currentTimeMillis();
+        try (AdminClient admin = createAdmin()) {
+            awaitCommitted(admin, sourceEnds);
+            Map<TopicPartition, Long> repartitionEnds = endOffsets(admin, repartitionTopics);
+            log.info("Source topics caught up, waiting for repartition topics to reach {}", repartitionEnds);
+            awaitCommitted(admin, repartitionEnds);
+            log.info("Catch-up complete after {} ms, resuming live emission", System.currentTimeMillis() - startedAt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Catch-up monitoring failed, resuming live emission: {}", e.getMessage());
+        } finally {
+            catchingUp = false;
+        }
+    }
+
+    private void awaitCommitted(AdminClient admin, Map<TopicPartition, Long> targets) throws Exception {
+        int failures = 0;
+        while (true) {
+            try {
+                Map<TopicPartition, OffsetAndMetadata> committed =
+                    admin.listConsumerGroupOffsets(appId).partitionsToOffsetAndMetadata().get();
+                if (reached(committed, targets)) {
+                    return;
+                }
+                failures = 0;
+            } catch (Exception e) {
+                if (++failures >= MAX_CONSECUTIVE_FAILURES) throw e;
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+    }
+
+    private static boolean reached(Map<TopicPartition, OffsetAndMetadata> committed, Map<TopicPartition, Long> targets) {
+        for (Map.Entry<TopicPartition, Long> target : targets.entrySet()) {
+            OffsetAndMetadata offset = committed.get(target.getKey());
+            long position = offset != null ? offset.offset() : 0;
+            if (position < target.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<TopicPartition, Long> endOffsets(AdminClient admin, List<String> topics) throws Exception {
+        Collection<TopicDescription> descriptions = admin.describeTopics(topics).allTopicNames().get().values();
+        Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+        for (TopicDescription description : descriptions) {
+            description.partitions().forEach(p ->
+                request.put(new TopicPartition(description.name(), p.partition()), OffsetSpec.latest()));
+        }
+
+        Map<TopicPartition, Long> ends = new HashMap<>();
+        admin.listOffsets(request).all().get().forEach((tp, info) -> ends.put(tp, info.offset()));
+        return ends;
+    }
+
+    private AdminClient createAdmin() {
+        Properties adminProps = new Properties();
+        adminProps.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        return AdminClient.create(adminProps);
+    }
+}
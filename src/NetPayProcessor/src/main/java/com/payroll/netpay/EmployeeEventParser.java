@@ -0,0 +1,141 @@
+package com.payroll.netpay;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.payroll.netpay.model.EmployeeEvent;
+
+import java.io.IOException;
+
+/**
+ * Streaming (token-level) parser for employee-events CloudEvent envelopes.
+ *
+ * Most records on employee-events (employee.created/updated, timeentry.*) are irrelevant to net
+ * pay, so instead of building JsonNode trees for the envelope and the stringified data, this walks
+ * the tokens once, keeps only the handful of scalar fields net pay uses and skips everything else.
+ * The Dapr outbox serializes the entity with DomainEvents last, so the event type is usually known
+ * only at the end; if it does appear earlier, irrelevant events are abandoned right away.
+ */
+final class EmployeeEventParser {
+
+    private static final JsonFactory factory = new JsonFactory();
+
+    private EmployeeEventParser() {}
+
+    /**
+     * @return the extracted event, or null if the record is not a taxinfo.*, deduction.* or
+     *         employee.deactivated event
+     */
+    static EmployeeEvent parse(byte[] cloudEvent) throws IOException {
+        try (JsonParser envelope = factory.createParser(cloudEvent)) {
+            if (envelope.nextToken() != JsonToken.START_OBJECT) return null;
+
+            while (envelope.nextToken() == JsonToken.FIELD_NAME) {
+                String field = envelope.getCurrentName();
+                JsonToken value = envelope.nextToken();
+                if (!"data".equals(field)) {
+                    envelope.skipChildren();
+                    continue;
+                }
+
+                if (value == JsonToken.VALUE_STRING) {
+                    // Dapr CloudEvent: data is a stringified JSON — parse it straight from the char buffer
+                    try (JsonParser data = factory.createParser(
+                            envelope.getTextCharacters(), envelope.getTextOffset(), envelope.getTextLength())) {
+                        return data.nextToken() == JsonToken.START_OBJECT ? parseData(data) : null;
+                    }
+                } else if (value == JsonToken.START_OBJECT) {
+                    // data might be an object (non-Dapr path)
+                    return parseData(envelope);
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    static boolean isRelevant(String eventType) {
+        return "employee.deactivated".equals(eventType)
+            || eventType.startsWith("taxinfo.")
+            || eventType.startsWith("deduction.");
+    }
+
+    /**
+     * Parse the entity object the parser is positioned on (START_OBJECT).
+     */
+    private static EmployeeEvent parseData(JsonParser p) throws IOException {
+        String eventType = null;
+        String id = null;
+        String employeeId = null;
+        String federalFilingStatus = "Single";
+        String state = "";
+        double additionalFederalWithholding = 0;
+        double additionalStateWithholding = 0;
+        double amount = 0;
+        boolean isPercentage = false;
+        boolean isActive = true;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            switch (field) {
+                case "Id" -> id = p.getValueAsString(null);
+                case "EmployeeId" -> employeeId = p.getValueAsString(null);
+                case "FederalFilingStatus" -> federalFilingStatus = p.getValueAsString("Single");
+                case "State" -> state = p.getValueAsString("");
+                case "AdditionalFederalWithholding" -> additionalFederalWithholding = p.getValueAsDouble(0);
+                case "AdditionalStateWithholding" -> additionalStateWithholding = p.getValueAsDouble(0);
+                case "Amount" -> amount = p.getValueAsDouble(0);
+                case "IsPercentage" -> isPercentage = p.getValueAsBoolean(false);
+                case "IsActive" -> isActive = p.getValueAsBoolean(true);
+                case "DomainEvents" -> {
+                    eventType = readFirstEventType(p);
+                    if (eventType == null || !isRelevant(eventType)) return null;
+                    continue;
+                }
+                default -> { }
+            }
+            p.skipChildren();
+        }
+
+        if (eventType == null) return null;
+        return new EmployeeEvent(eventType, id, employeeId, federalFilingStatus, state,
+            additionalFederalWithholding, additionalStateWithholding, amount, isPercentage, isActive);
+    }
+
+    /**
+     * Read DomainEvents[0].EventType and leave the parser on the array's END_ARRAY.
+     * Returns null if DomainEvents is not a non-empty array.
+     */
+    private static String readFirstEventType(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return null;
+        }
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            if (p.currentToken() != JsonToken.END_ARRAY) {
+                p.skipChildren();
+                skipRestOfArray(p);
+            }
+            return null;
+        }
+
+        String eventType = "";
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if ("EventType".equals(field)) {
+                eventType = p.getValueAsString("");
+            }
+            p.skipChildren();
+        }
+        skipRestOfArray(p);
+        return eventType;
+    }
+
+    private static void skipRestOfArray(JsonParser p) throws IOException {
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            p.skipChildren();
+        }
+    }
+}
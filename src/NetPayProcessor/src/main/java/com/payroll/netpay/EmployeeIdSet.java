@@ -0,0 +1,215 @@
+package com.payroll.netpay;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compact set of employee IDs, used for deactivated employees (which are kept forever).
+ *
+ * Employee IDs are GUIDs, so canonical lowercase UUID strings are stored as two longs in a
+ * primitive open-addressing table (linear probing, 16 bytes per slot) instead of as String
+ * objects in a HashSet. Anything else (upper case, non-UUID) goes to a small fallback set, so
+ * membership is exactly String equality.
+ *
+ * An optional blocked Bloom filter (one 64-bit word per key, 5-10 bits per slot) answers most
+ * negative lookups, the common case, from a structure a fraction of the table's size. It is
+ * rebuilt whenever the table grows.
+ *
+ * Not thread-safe for writes; concurrent reads are fine once writes have stopped.
+ */
+final class EmployeeIdSet {
+
+    private static final int INITIAL_CAPACITY = 1024;   // slots, power of two
+    private static final int BLOOM_BITS_PER_SLOT = 10;
+    private static final int BLOOM_HASHES = 6;
+
+    // Value of each lowercase hex digit, -1 for every other ASCII character
+    private static final int[] HEX_VALUE = new int[128];
+
+    static {
+        Arrays.fill(HEX_VALUE, -1);
+        for (char c = '0'; c <= '9'; c++) HEX_VALUE[c] = c - '0';
+        for (char c = 'a'; c <= 'f'; c++) HEX_VALUE[c] = c - 'a' + 10;
+    }
+
+    private final boolean bloomEnabled;
+    private long[] table;        // interleaved msb/lsb pairs; (0, 0) marks an empty slot
+    private int mask;
+    private int size;
+    private boolean containsNil; // the all-zero UUID can't live in the table
+    private long[] bloom;
+    private int bloomMask;
+    private final Set<String> other = new HashSet<>();
+
+    EmployeeIdSet(boolean bloomEnabled) {
+        this.bloomEnabled = bloomEnabled;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    boolean add(String id) {
+        if (!isCanonicalUuid(id)) return other.add(id);
+
+        long msb = msb(id);
+        long lsb = lsb(id);
+        if (msb == 0 && lsb == 0) {
+            boolean added = !containsNil;
+            containsNil = true;
+            return added;
+        }
+        if (!insert(msb, lsb)) return false;
+
+        size++;
+        if (size > (mask + 1) - ((mask + 1) >>> 2)) {
+            rehash((mask + 1) << 1);
+        }
+        return true;
+    }
+
+    boolean contains(String id) {
+        // Hot path: same checks as isCanonicalUuid/msb/lsb, but each digit is decoded once
+        if (!hasUuidShape(id)) return containsOther(id);
+        long h0 = hex4(id, 0);
+        long h1 = hex4(id, 4);
+        long h2 = hex4(id, 9);
+        long h3 = hex4(id, 14);
+        long h4 = hex4(id, 19);
+        long h5 = hex4(id, 24);
+        long h6 = hex4(id, 28);
+        long h7 = hex4(id, 32);
+        if ((h0 | h1 | h2 | h3 | h4 | h5 | h6 | h7) < 0) return containsOther(id);
+
+        long msb = h0 << 48 | h1 << 32 | h2 << 16 | h3;
+        long lsb = h4 << 48 | h5 << 32 | h6 << 16 | h7;
+        if (msb == 0 && lsb == 0) return containsNil;
+
+        long hash = mix(msb, lsb);
+        if (bloomEnabled && !bloomMightContain(hash)) return false;
+
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            long m = table[slot << 1];
+            long l = table[(slot << 1) + 1];
+            if (m == msb && l == lsb) return true;
+            if (m == 0 && l == 0) return false;
+        }
+    }
+
+    private boolean containsOther(String id) {
+        return !other.isEmpty() && other.contains(id);
+    }
+
+    int size() {
+        return size + (containsNil ? 1 : 0) + other.size();
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Approximate heap used by the table and Bloom filter (excluding the fallback set). */
+    long memoryBytes() {
+        return (long) table.length * Long.BYTES + (bloom != null ? (long) bloom.length * Long.BYTES : 0);
+    }
+
+    private boolean insert(long msb, long lsb) {
+        long hash = mix(msb, lsb);
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            long m = table[slot << 1];
+            long l = table[(slot << 1) + 1];
+            if (m == msb && l == lsb) return false;
+            if (m == 0 && l == 0) {
+                table[slot << 1] = msb;
+                table[(slot << 1) + 1] = lsb;
+                if (bloomEnabled) bloomAdd(hash);
+                return true;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] old = table;
+        allocate(capacity);
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != 0 || old[i + 1] != 0) {
+                insert(old[i], old[i + 1]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity << 1];
+        mask = capacity - 1;
+        if (bloomEnabled) {
+            // Rounded down to a power of two: 5-10 bits per slot, i.e. ~7-27 bits per entry
+            int words = Integer.highestOneBit(Math.max(1, capacity * BLOOM_BITS_PER_SLOT / Long.SIZE));
+            bloom = new long[words];
+            bloomMask = words - 1;
+        }
+    }
+
+    // Blocked Bloom filter: the top 28 bits of the hash pick one word, six 6-bit slices of the
+    // low 36 bits pick the bits within it
+    private void bloomAdd(long hash) {
+        bloom[(int) (hash >>> 36) & bloomMask] |= bloomBits(hash);
+    }
+
+    private boolean bloomMightContain(long hash) {
+        long bits = bloomBits(hash);
+        return (bloom[(int) (hash >>> 36) & bloomMask] & bits) == bits;
+    }
+
+    private static long bloomBits(long hash) {
+        long bits = 0;
+        long h = hash;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            bits |= 1L << (h & 63);
+            h >>>= 6;
+        }
+        return bits;
+    }
+
+    private static long mix(long msb, long lsb) {
+        // murmur3 fmix64 over both halves
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx with lowercase hex digits. */
+    private static boolean isCanonicalUuid(String s) {
+        if (!hasUuidShape(s)) return false;
+        return (hex4(s, 0) | hex4(s, 4) | hex4(s, 9) | hex4(s, 14)
+            | hex4(s, 19) | hex4(s, 24) | hex4(s, 28) | hex4(s, 32)) >= 0;
+    }
+
+    private static boolean hasUuidShape(String s) {
+        return s != null && s.length() == 36
+            && s.charAt(8) == '-' && s.charAt(13) == '-' && s.charAt(18) == '-' && s.charAt(23) == '-';
+    }
+
+    private static long msb(String s) {
+        return (long) hex4(s, 0) << 48 | (long) hex4(s, 4) << 32 | (long) hex4(s, 9) << 16 | hex4(s, 14);
+    }
+
+    private static long lsb(String s) {
+        return (long) hex4(s, 19) << 48 | (long) hex4(s, 24) << 32 | (long) hex4(s, 28) << 16 | hex4(s, 32);
+    }
+
+    /**
+     * Four hex digits at pos as a 16-bit value, or a negative number if any is not a lowercase
+     * hex digit. Table lookups rather than range checks: the digits are random, so
+     * per-character branches on them mispredict constantly.
+     */
+    private static int hex4(String s, int pos) {
+        char c1 = s.charAt(pos);
+        char c2 = s.charAt(pos + 1);
+        char c3 = s.charAt(pos + 2);
+        char c4 = s.charAt(pos + 3);
+        if ((c1 | c2 | c3 | c4) > 0x7f) return -1;
+        return HEX_VALUE[c1] << 12 | HEX_VALUE[c2] << 8 | HEX_VALUE[c3] << 4 | HEX_VALUE[c4];
+    }
+}
@@ -0,0 +1,87 @@
+package com.payroll.netpay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payroll.netpay.model.EmployeeEvent;
+import com.payroll.netpay.model.GrossPay;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * First stage of the topology: re-keys both source topics by employeeId so they can be
+ * repartitioned and co-partitioned ahead of NetPayProcessor and its state stores.
+ *
+ * employee-gross-pay is keyed by {"EMPLOYEE_ID","PAY_PERIOD_NUMBER"} and employee-events by
+ * the Dapr CloudEvent id, so the same employee otherwise lands in different partitions.
+ * Gross pay is forwarded as GrossPay JSON (the period number otherwise only lives in the old key);
+ * employee events are stream-parsed out of the CloudEvent envelope (see EmployeeEventParser) and
+ * only the event types NetPayProcessor acts on are forwarded, as compact EmployeeEvent JSON.
+ * Values stay UTF-8 bytes throughout: Jackson reads and writes them without a String in between.
+ */
+public class EmployeeRekeyProcessor implements Processor<String, byte[], String, byte[]> {
+
+    private static final Logger log = LoggerFactory.getLogger(EmployeeRekeyProcessor.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String sourceName;
+    private ProcessorContext<String, byte[]> context;
+
+    /**
+     * @param sourceName "gross-pay" (forwards GrossPay as JSON) or "employee-events"
+     *                   (forwards EmployeeEvent as JSON)
+     */
+    public EmployeeRekeyProcessor(String sourceName) {
+        this.sourceName = sourceName;
+    }
+
+    @Override
+    public void init(ProcessorContext<String, byte[]> context) {
+        this.context = context;
+    }
+
+    @Override
+    public void process(Record<String, byte[]> record) {
+        if (record.value() == null) return;
+
+        try {
+            if ("gross-pay".equals(sourceName)) {
+                GrossPay gp = parseGrossPay(record.key(), record.value());
+                context.forward(record.withKey(gp.getEmployeeId()).withValue(mapper.writeValueAsBytes(gp)));
+            } else {
+                EmployeeEvent event = EmployeeEventParser.parse(record.value());
+                if (event == null) return;
+                String employeeId = employeeIdOf(event);
+                if (employeeId == null) return;
+                context.forward(record.withKey(employeeId).withValue(mapper.writeValueAsBytes(event)));
+            }
+        } catch (Exception e) {
+            log.error("Error re-keying record from {}: {}", sourceName, e.getMessage(), e);
+        }
+    }
+
+    private static GrossPay parseGrossPay(String key, byte[] value) throws Exception {
+        JsonNode keyNode = mapper.readTree(key);
+        JsonNode valueNode = mapper.readTree(value);
+
+        return new GrossPay(
+            keyNode.get("EMPLOYEE_ID").asText(),
+            keyNode.get("PAY_PERIOD_NUMBER").asLong(),
+            valueNode.path("PAY_RATE").asDouble(0),
+            valueNode.path("PAY_TYPE").asText("1"),
+            valueNode.path("GROSS_PAY").asDouble(0),
+            valueNode.path("TOTAL_HOURS_WORKED").asDouble(0),
+            valueNode.path("PAY_PERIOD_START").asText(""),
+            valueNode.path("PAY_PERIOD_END").asText("")
+        );
+    }
+
+    /**
+     * Employee events carry the employee in Id, taxinfo/deduction events in EmployeeId.
+     */
+    private static String employeeIdOf(EmployeeEvent event) {
+        return "employee.deactivated".equals(event.getEventType()) ? event.getId() : event.getEmployeeId();
+    }
+}
@@ -0,0 +1,81 @@
+package com.payroll.netpay;
+
+import com.payroll.netpay.model.GrossPay;
+
+import java.util.Arrays;
+
+/**
+ * Gross pay for a single employee, indexed by primitive pay period number.
+ *
+ * Periods are kept in a sorted long[] with a parallel value array, so lookups are a binary
+ * search without boxing and iteration is in period order. An employee only ever has a handful
+ * of periods, which keeps insertion by array shift cheap.
+ *
+ * Not thread-safe: instances are only touched from the stream thread that owns the employee.
+ */
+final class GrossPayPeriods {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] periods = new long[INITIAL_CAPACITY];
+    private GrossPay[] values = new GrossPay[INITIAL_CAPACITY];
+    private int size;
+
+    GrossPay get(long payPeriodNumber) {
+        int idx = Arrays.binarySearch(periods, 0, size, payPeriodNumber);
+        return idx >= 0 ? values[idx] : null;
+    }
+
+    void put(GrossPay grossPay) {
+        long payPeriodNumber = grossPay.getPayPeriodNumber();
+        int idx = Arrays.binarySearch(periods, 0, size, payPeriodNumber);
+        if (idx >= 0) {
+            values[idx] = grossPay;
+            return;
+        }
+
+        int insertAt = -idx - 1;
+        if (size == periods.length) {
+            periods = Arrays.copyOf(periods, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(periods, insertAt, periods, insertAt + 1, size - insertAt);
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        periods[insertAt] = payPeriodNumber;
+        values[insertAt] = grossPay;
+        size++;
+    }
+
+    /**
+     * Remove every period before {@code payPeriodNumber}.
+     * @return how many periods were removed
+     */
+    int removeBefore(long payPeriodNumber) {
+        int idx = Arrays.binarySearch(periods, 0, size, payPeriodNumber);
+        int removed = idx >= 0 ? idx : -idx - 1;
+        if (removed == 0) return 0;
+
+        System.arraycopy(periods, removed, periods, 0, size - removed);
+        System.arraycopy(values, removed, values, 0, size - removed);
+        Arrays.fill(values, size - removed, size, null);
+        size -= removed;
+        return removed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Pay period number at position {@code index}, in ascending period order. */
+    long periodAt(int index) {
+        return periods[index];
+    }
+
+    GrossPay valueAt(int index) {
+        return values[index];
+    }
+}
@@ -2,19 +2,22 @@ package com.payroll.netpay;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payroll.netpay.model.EmployeeEvent;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
-import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.Serdes;
-import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.Topology;
 import org.apache.kafka.streams.errors.StreamsUncaughtExceptionHandler;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Named;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Repartitioned;
+import org.apache.kafka.streams.state.Stores;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,25 +26,47 @@ import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.serialization.StringSerializer;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class NetPayApp {
 
     private static final Logger log = LoggerFactory.getLogger(NetPayApp.class);
     private static final long RESTART_DELAY_MS = 30_000;
+    private static final int LIST_TOPICS_ATTEMPTS = 5;
+    private static final long LIST_TOPICS_TIMEOUT_MS = 30_000;
 
     static final String GROSS_PAY_TOPIC = "employee-gross-pay";
     static final String EMPLOYEE_EVENTS_TOPIC = "employee-events";
     static final String NET_PAY_TOPIC = "employee-net-pay";
 
+    // Repartitioned names; Kafka Streams creates <appId>-<name>-repartition
+    static final String GROSS_PAY_REPARTITION = "gross-pay-by-employee";
+    static final String EMPLOYEE_EVENTS_REPARTITION = "employee-events-by-employee";
+
+    // Every store in the topology; each has an <appId>-<store>-changelog topic
+    static final String[] STATE_STORES = {
+        NetPayProcessor.GROSS_PAY_STORE, NetPayProcessor.TAX_CONFIG_STORE,
+        NetPayProcessor.DEDUCTION_STORE, NetPayProcessor.DEACTIVATED_STORE,
+        NetPayProcessor.DIRTY_STORE, NetPayProcessor.RECOMPUTE_STORE,
+        NetPayProcessor.EVICTED_STORE, NetPayProcessor.TOMBSTONE_STORE
+    };
+
+    private static final byte[] DEACTIVATED_EVENT_BYTES = "employee.deactivated".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EMPLOYEE_ID_KEY_BYTES = "\"EMPLOYEE_ID\":\"".getBytes(StandardCharsets.UTF_8);
+
     private static volatile boolean shuttingDown = false;
 
     public static void main(String[] args) {
@@ -76,27 +101,74 @@ public class NetPayApp {
      * @return true if the app should restart (error), false for graceful shutdown.
      */
     private static boolean runOnce() {
-        // Clear stale in-memory state from any previous run
-        NetPayProcessor.grossPayStore.clear();
-        NetPayProcessor.taxConfigStore.clear();
-        NetPayProcessor.deductionStore.clear();
-        NetPayProcessor.deactivatedEmployees.clear();
-
         Properties props = buildConfig();
         String appId = props.getProperty(StreamsConfig.APPLICATION_ID_CONFIG);
         String bootstrapServers = props.getProperty(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG);
 
-        resetConsumerGroup(appId, bootstrapServers);
-        prescanEmployeeEvents(bootstrapServers);
-        purgeDeactivatedFromNetPay(bootstrapServers);
+        // State lives in changelogged stores, so a normal start resumes from committed offsets.
+        // A missing store changelog (first run, or upgrade from the in-memory version) forces a
+        // rebuild, since committed offsets alone would skip history the stores never saw.
+        boolean rebuild = Boolean.parseBoolean(envOrDefault("REBUILD_STATE", "false"));
+        if (!rebuild) {
+            boolean changelogExists;
+            try {
+                changelogExists = storeChangelogExists(appId, bootstrapServers);
+            } catch (IllegalStateException e) {
+                // Not knowing is not the same as missing: a rebuild would wipe good state
+                log.error("{}, will not start without knowing whether to rebuild", e.getMessage());
+                return true;
+            }
+            if (!changelogExists) {
+                log.info("No changelog found for {}, falling back to full rebuild", NetPayProcessor.GROSS_PAY_STORE);
+                rebuild = true;
+            }
+        }
+
+        long startedAt = System.currentTimeMillis();
+        Map<String, Long> phaseMillis = new LinkedHashMap<>();
+        if (rebuild) {
+            long phaseStart = System.currentTimeMillis();
+            resetConsumerGroup(appId, bootstrapServers);
+            phaseMillis.put("reset-group", System.currentTimeMillis() - phaseStart);
+
+            phaseStart = System.currentTimeMillis();
+            try {
+                deleteInternalTopics(appId, bootstrapServers);
+            } catch (IllegalStateException e) {
+                // Replaying over the old changelogs would restore the state the rebuild discards
+                log.error("{}, will not rebuild over stale internal topics", e.getMessage());
+                return true;
+            }
+            phaseMillis.put("delete-internal-topics", System.currentTimeMillis() - phaseStart);
+
+            phaseStart = System.currentTimeMillis();
+            EmployeeIdSet deactivatedEmployees = prescanEmployeeEvents(bootstrapServers);
+            phaseMillis.put("prescan", System.currentTimeMillis() - phaseStart);
+
+            phaseStart = System.currentTimeMillis();
+            purgeDeactivatedFromNetPay(bootstrapServers, deactivatedEmployees);
+            phaseMillis.put("purge", System.currentTimeMillis() - phaseStart);
+        }
+
+        // A rebuild replays all history; hold back intermediate results until it has caught up
+        CatchUpMonitor catchUp = rebuild
+            ? CatchUpMonitor.start(appId, bootstrapServers,
+                List.of(GROSS_PAY_TOPIC, EMPLOYEE_EVENTS_TOPIC),
+                List.of(repartitionTopic(appId, GROSS_PAY_REPARTITION), repartitionTopic(appId, EMPLOYEE_EVENTS_REPARTITION)))
+            : CatchUpMonitor.live();
 
-        Topology topology = buildTopology();
+        Topology topology = buildTopology(catchUp);
         log.info("Topology:\n{}", topology.describe());
 
         KafkaStreams streams = new KafkaStreams(topology, props);
-        streams.cleanUp();
+        if (rebuild) {
+            // Drop local store files so they are rebuilt from the replay, not restored
+            streams.cleanUp();
+        }
 
         CountDownLatch latch = new CountDownLatch(1);
+        AtomicLong streamsStartedAt = new AtomicLong();
+        AtomicBoolean startupLogged = new AtomicBoolean();
 
         streams.setUncaughtExceptionHandler(exception -> {
             log.error("Uncaught exception in Kafka Streams: {} - {}",
@@ -106,6 +178,10 @@ public class NetPayApp {
 
         streams.setStateListener((newState, oldState) -> {
             log.info("Kafka Streams state change: {} -> {}", oldState, newState);
+            if (newState == KafkaStreams.State.RUNNING && !startupLogged.getAndSet(true)) {
+                log.info("Startup phases (ms): {}, streams-running={}, total={}", phaseMillis,
+                    System.currentTimeMillis() - streamsStartedAt.get(), System.currentTimeMillis() - startedAt);
+            }
             if (newState == KafkaStreams.State.ERROR) {
                 latch.countDown();
             }
@@ -129,6 +205,7 @@ public class NetPayApp {
         shutdownWatcher.start();
 
         try {
+            streamsStartedAt.set(System.currentTimeMillis());
             streams.start();
             log.info("Net Pay Processor started");
             latch.await();
@@ -137,6 +214,7 @@ public class NetPayApp {
         }
 
         streams.close(Duration.ofSeconds(10));
+        catchUp.stop();
 
         if (shuttingDown) {
             return false;
@@ -177,178 +255,182 @@ public class NetPayApp {
         }
     }
 
+    private static String storeChangelogTopic(String appId, String storeName) {
+        return appId + "-" + storeName + "-changelog";
+    }
+
+    private static String repartitionTopic(String appId, String name) {
+        return appId + "-" + name + "-repartition";
+    }
+
     /**
-     * Pre-scan the employee-events topic from the beginning to build the deactivatedEmployees set.
-     * This ensures all deactivated employees are known before any gross pay events are processed,
-     * avoiding the cross-partition ordering problem between the two source topics.
+     * Whether the gross-pay-store changelog exists. Listing topics is retried with backoff.
+     * @throws IllegalStateException if the topic list could not be read at all
      */
-    private static void prescanEmployeeEvents(String bootstrapServers) {
-        ObjectMapper mapper = new ObjectMapper();
-        Properties props = new Properties();
-        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, "net-pay-prescan-" + System.currentTimeMillis());
-        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-
-        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props)) {
-            // Manually assign all partitions and seek to beginning
-            List<TopicPartition> partitions = consumer.partitionsFor(EMPLOYEE_EVENTS_TOPIC)
-                .stream()
-                .map(pi -> new TopicPartition(pi.topic(), pi.partition()))
-                .collect(Collectors.toList());
-            consumer.assign(partitions);
-            consumer.seekToBeginning(partitions);
-
-            // Get end offsets to know when we've caught up
-            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
-
-            int created = 0, deactivated = 0, totalRecords = 0;
-            boolean done = false;
-
-            while (!done) {
-                ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(5));
-                if (records.isEmpty()) {
-                    // Check if we've reached the end of all partitions
-                    done = true;
-                    for (TopicPartition tp : partitions) {
-                        if (consumer.position(tp) < endOffsets.get(tp)) {
-                            done = false;
-                            break;
-                        }
+    private static boolean storeChangelogExists(String appId, String bootstrapServers) {
+        Properties adminProps = new Properties();
+        adminProps.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        try (AdminClient admin = AdminClient.create(adminProps)) {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return admin.listTopics().names().get(LIST_TOPICS_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                        .contains(storeChangelogTopic(appId, NetPayProcessor.GROSS_PAY_STORE));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while listing topics", e);
+                } catch (Exception e) {
+                    if (attempt == LIST_TOPICS_ATTEMPTS) {
+                        throw new IllegalStateException("Could not list topics after " + attempt + " attempts", e);
+                    }
+                    long backoffMs = 1000L << (attempt - 1);
+                    log.warn("Could not list topics (attempt {}/{}), retrying in {} ms: {}",
+                        attempt, LIST_TOPICS_ATTEMPTS, backoffMs, e.getMessage());
+                    try {
+                        Thread.sleep(backoffMs);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while listing topics", ie);
                     }
-                    continue;
                 }
+            }
+        }
+    }
 
-                for (ConsumerRecord<String, String> record : records) {
-                    totalRecords++;
-                    if (record.value() == null) continue;
+    /** Exact names of this topology's changelog and repartition topics. */
+    static Set<String> internalTopics(String appId) {
+        Set<String> topics = new HashSet<>();
+        for (String store : STATE_STORES) {
+            topics.add(storeChangelogTopic(appId, store));
+        }
+        topics.add(repartitionTopic(appId, GROSS_PAY_REPARTITION));
+        topics.add(repartitionTopic(appId, EMPLOYEE_EVENTS_REPARTITION));
+        return topics;
+    }
 
-                    try {
-                        JsonNode envelope = mapper.readTree(record.value());
-                        String dataStr = envelope.path("data").asText(null);
-                        if (dataStr == null) {
-                            JsonNode dataNode = envelope.path("data");
-                            if (dataNode.isMissingNode() || dataNode.isNull()) continue;
-                            dataStr = dataNode.toString();
-                        }
+    /**
+     * Delete this application's internal changelog and repartition topics before a rebuild,
+     * the same cleanup the Kafka Streams application reset tool performs. Otherwise the stores
+     * would be restored from the old changelogs before the replay starts. Kafka Streams
+     * recreates the topics on startup, so this waits until the deletion has completed.
+     * Only the topics named by this topology are touched, never those of another application
+     * whose id happens to start with this one.
+     * @throws IllegalStateException if the topics could not be deleted
+     */
+    private static void deleteInternalTopics(String appId, String bootstrapServers) {
+        Properties adminProps = new Properties();
+        adminProps.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        try (AdminClient admin = AdminClient.create(adminProps)) {
+            Set<String> internalTopics = new HashSet<>(admin.listTopics().names().get());
+            internalTopics.retainAll(internalTopics(appId));
+            if (internalTopics.isEmpty()) {
+                return;
+            }
 
-                        JsonNode data = mapper.readTree(dataStr);
-                        JsonNode domainEvents = data.path("DomainEvents");
-                        if (!domainEvents.isArray() || domainEvents.isEmpty()) continue;
-                        String eventType = domainEvents.get(0).path("EventType").asText("");
-
-                        if ("employee.created".equals(eventType)) {
-                            created++;
-                            // Don't remove from deactivated set here. Dapr outbox assigns
-                            // different CloudEvent IDs per write, so events for the same
-                            // employee land on different partitions. When polling, a created
-                            // event from one partition may arrive AFTER a deactivated event
-                            // from another partition (despite being chronologically earlier),
-                            // incorrectly undoing the deactivation. With GUIDs, employee IDs
-                            // are never reused, so only tracking deactivations is sufficient.
-                        } else if ("employee.deactivated".equals(eventType)) {
-                            String empId = data.path("Id").asText(null);
-                            if (empId != null) {
-                                NetPayProcessor.deactivatedEmployees.add(empId);
-                                deactivated++;
+            admin.deleteTopics(internalTopics).all().get();
+            for (int attempt = 1; ; attempt++) {
+                Set<String> remaining = new HashSet<>(admin.listTopics().names().get());
+                remaining.retainAll(internalTopics);
+                if (remaining.isEmpty()) {
+                    break;
+                }
+                if (attempt == 30) {
+                    throw new IllegalStateException("Internal topics still exist after deletion: " + remaining);
+                }
+                Thread.sleep(1_000);
+            }
+            log.info("Deleted internal topics for rebuild: {}", internalTopics);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while deleting internal topics", e);
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not delete internal topics: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Pre-scan the employee-events topic from the beginning to collect deactivated employees,
+     * so a rebuild can purge their rows from employee-net-pay before the replay starts.
+     *
+     * Partitions are read in parallel (PRESCAN_THREADS, default one per core), and only records
+     * containing the bytes "employee.deactivated" are parsed.
+     */
+    private static EmployeeIdSet prescanEmployeeEvents(String bootstrapServers) {
+        // Dapr outbox assigns different CloudEvent IDs per write, so events for the same
+        // employee land on different partitions and partitions are read concurrently; a created
+        // event may be seen after its employee's deactivation. With GUIDs, employee IDs are
+        // never reused, so only tracking deactivations is sufficient.
+        EmployeeIdSet deactivatedEmployees = new EmployeeIdSet(true);
+        AtomicLong parsed = new AtomicLong();
+
+        try {
+            long totalRecords = ParallelTopicScan.scan(bootstrapServers, EMPLOYEE_EVENTS_TOPIC,
+                "net-pay-prescan-" + System.currentTimeMillis(), prescanThreads(), record -> {
+                    byte[] value = record.value();
+                    if (value == null || ParallelTopicScan.indexOf(value, DEACTIVATED_EVENT_BYTES, 0) < 0) return;
+
+                    parsed.incrementAndGet();
+                    try {
+                        EmployeeEvent event = EmployeeEventParser.parse(value);
+                        if (event != null && "employee.deactivated".equals(event.getEventType()) && event.getId() != null) {
+                            synchronized (deactivatedEmployees) {
+                                deactivatedEmployees.add(event.getId());
                             }
                         }
                     } catch (Exception e) {
                         // Skip unparseable records
                     }
-                }
-
-                // Check if we've caught up
-                done = true;
-                for (TopicPartition tp : partitions) {
-                    if (consumer.position(tp) < endOffsets.get(tp)) {
-                        done = false;
-                        break;
-                    }
-                }
-            }
+                });
 
-            log.info("Pre-scan complete: {} records scanned, {} created, {} deactivated, {} employees in deactivated set",
-                totalRecords, created, deactivated, NetPayProcessor.deactivatedEmployees.size());
+            log.info("Pre-scan complete: {} records scanned, {} parsed, {} employees in deactivated set",
+                totalRecords, parsed.get(), deactivatedEmployees.size());
         } catch (Exception e) {
             log.warn("Pre-scan failed (will rely on runtime deactivation tracking): {}", e.getMessage());
         }
+        return deactivatedEmployees;
     }
 
     /**
      * Scan the employee-net-pay topic and produce tombstones for any records belonging
      * to deactivated employees. This ensures the ksqlDB SOURCE TABLE drops stale rows.
+     *
+     * Partitions are read in parallel; the employee ID is sliced out of the key bytes and
+     * only keys of deactivated employees (or keys not in the expected form) are parsed.
      */
-    private static void purgeDeactivatedFromNetPay(String bootstrapServers) {
-        if (NetPayProcessor.deactivatedEmployees.isEmpty()) {
+    private static void purgeDeactivatedFromNetPay(String bootstrapServers, EmployeeIdSet deactivatedEmployees) {
+        if (deactivatedEmployees.isEmpty()) {
             log.info("No deactivated employees to purge from {}", NET_PAY_TOPIC);
             return;
         }
 
         ObjectMapper mapper = new ObjectMapper();
-        Properties consumerProps = new Properties();
-        consumerProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        consumerProps.put(ConsumerConfig.GROUP_ID_CONFIG, "net-pay-purge-" + System.currentTimeMillis());
-        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
-        consumerProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-        consumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-
         Properties producerProps = new Properties();
         producerProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
         producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
 
-        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(consumerProps);
-             KafkaProducer<String, String> producer = new KafkaProducer<>(producerProps)) {
-
-            List<TopicPartition> partitions = consumer.partitionsFor(NET_PAY_TOPIC)
-                .stream()
-                .map(pi -> new TopicPartition(pi.topic(), pi.partition()))
-                .collect(Collectors.toList());
-            consumer.assign(partitions);
-            consumer.seekToBeginning(partitions);
-
-            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
-            Set<String> tombstoneKeys = new HashSet<>();
-            boolean done = false;
-
-            while (!done) {
-                ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(5));
-                if (records.isEmpty()) {
-                    done = true;
-                    for (TopicPartition tp : partitions) {
-                        if (consumer.position(tp) < endOffsets.get(tp)) {
-                            done = false;
-                            break;
-                        }
-                    }
-                    continue;
-                }
+        try (KafkaProducer<String, String> producer = new KafkaProducer<>(producerProps)) {
+            Set<String> tombstoneKeys = ConcurrentHashMap.newKeySet();
+
+            ParallelTopicScan.scan(bootstrapServers, NET_PAY_TOPIC,
+                "net-pay-purge-" + System.currentTimeMillis(), prescanThreads(), record -> {
+                    byte[] key = record.key();
+                    if (key == null) return;
+
+                    String candidate = employeeIdFromKeyBytes(key);
+                    if (candidate != null && !deactivatedEmployees.contains(candidate)) return;
 
-                for (ConsumerRecord<String, String> record : records) {
-                    if (record.key() == null) continue;
                     try {
-                        JsonNode keyNode = mapper.readTree(record.key());
+                        JsonNode keyNode = mapper.readTree(key);
                         String employeeId = keyNode.path("EMPLOYEE_ID").asText(null);
-                        if (employeeId != null && NetPayProcessor.deactivatedEmployees.contains(employeeId)) {
-                            tombstoneKeys.add(record.key());
+                        if (employeeId != null && deactivatedEmployees.contains(employeeId)) {
+                            tombstoneKeys.add(new String(key, StandardCharsets.UTF_8));
                         }
                     } catch (Exception e) {
                         // Skip unparseable keys
                     }
-                }
-
-                done = true;
-                for (TopicPartition tp : partitions) {
-                    if (consumer.position(tp) < endOffsets.get(tp)) {
-                        done = false;
-                        break;
-                    }
-                }
-            }
+                });
 
             // Produce tombstones
             for (String key : tombstoneKeys) {
@@ -363,34 +445,115 @@ public class NetPayApp {
         }
     }
 
-    static Topology buildTopology() {
-        Topology topology = new Topology();
+    /**
+     * Pre-filter for net pay keys ({"EMPLOYEE_ID":"...","PAY_PERIOD_NUMBER":n}): the quoted
+     * value after "EMPLOYEE_ID":, or null if the key is not in that exact form.
+     */
+    private static String employeeIdFromKeyBytes(byte[] key) {
+        int marker = ParallelTopicScan.indexOf(key, EMPLOYEE_ID_KEY_BYTES, 0);
+        if (marker < 0) return null;
+        int start = marker + EMPLOYEE_ID_KEY_BYTES.length;
+        for (int i = start; i < key.length; i++) {
+            if (key[i] == '"') return new String(key, start, i - start, StandardCharsets.UTF_8);
+            if (key[i] == '\\') return null;
+        }
+        return null;
+    }
 
-        // Sources
-        topology.addSource("gross-pay-source",
-            Serdes.String().deserializer(), Serdes.String().deserializer(),
-            GROSS_PAY_TOPIC);
+    private static int prescanThreads() {
+        return Integer.parseInt(envOrDefault("PRESCAN_THREADS", String.valueOf(ParallelTopicScan.defaultWorkers())));
+    }
+
+    static Topology buildTopology() {
+        return buildTopology(CatchUpMonitor.live());
+    }
 
-        topology.addSource("employee-events-source",
-            Serdes.String().deserializer(), Serdes.String().deserializer(),
-            EMPLOYEE_EVENTS_TOPIC);
+    static Topology buildTopology(CatchUpMonitor catchUp) {
+        // 0 (default) emits on every update; otherwise results are coalesced per employee/period
+        Duration coalesceWindow = Duration.ofMillis(Long.parseLong(envOrDefault("NET_PAY_COALESCE_MS", "0")));
+        // 0 (default) keeps every pay period; otherwise older periods are evicted from gross-pay-store
+        int retainedPeriods = Integer.parseInt(envOrDefault("NET_PAY_RETAINED_PERIODS", "0"));
+        // Periods a tax or deduction change recomputes: 1 (default) is the current period only.
+        // Never more than are retained, since evicted periods cannot be recomputed.
+        int openPeriods = Integer.parseInt(envOrDefault("NET_PAY_OPEN_PERIODS", "1"));
+        if (retainedPeriods > 0) {
+            openPeriods = Math.min(openPeriods, retainedPeriods);
+        }
+        RecomputeQueue.Limits recomputeLimits = new RecomputeQueue.Limits(openPeriods,
+            Integer.parseInt(envOrDefault("NET_PAY_RECOMPUTE_BATCH", "1000")),
+            Integer.parseInt(envOrDefault("NET_PAY_RECOMPUTE_QUEUE_CAPACITY", "100000")),
+            Duration.ofMillis(Long.parseLong(envOrDefault("NET_PAY_RECOMPUTE_INTERVAL_MS", "100"))));
 
-        // Processors — each wired to its source
-        topology.addProcessor("gross-pay-processor",
-            () -> new NetPayProcessor("gross-pay"),
-            "gross-pay-source");
+        return buildTopology(catchUp, coalesceWindow, retainedPeriods, recomputeLimits);
+    }
 
-        topology.addProcessor("employee-events-processor",
-            () -> new NetPayProcessor("employee-events"),
-            "employee-events-source");
+    static Topology buildTopology(CatchUpMonitor catchUp, Duration coalesceWindow, int retainedPeriods,
+                                  RecomputeQueue.Limits recomputeLimits) {
+        StreamsBuilder builder = new StreamsBuilder();
+
+        // Per-task stores, changelogged so they survive restarts and move with their task
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+            Stores.persistentKeyValueStore(NetPayProcessor.GROSS_PAY_STORE),
+            Serdes.String(), StateSerdes.grossPayPeriods()).withCachingEnabled());
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+            Stores.persistentKeyValueStore(NetPayProcessor.TAX_CONFIG_STORE),
+            Serdes.String(), StateSerdes.taxConfig()).withCachingEnabled());
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+            Stores.persistentKeyValueStore(NetPayProcessor.DEDUCTION_STORE),
+            Serdes.String(), StateSerdes.deductionMap()).withCachingEnabled());
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+            Stores.persistentKeyValueStore(NetPayProcessor.DEACTIVATED_STORE),
+            Serdes.String(), Serdes.Long()).withCachingEnabled());
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+            Stores.persistentKeyValueStore(NetPayProcessor.DIRTY_STORE),
+            Serdes.String(), Serdes.Long()).withCachingEnabled());
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+            Stores.persistentKeyValueStore(NetPayProcessor.RECOMPUTE_STORE),
+            Serdes.String(), Serdes.Long()).withCachingEnabled());
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+            Stores.persistentKeyValueStore(NetPayProcessor.EVICTED_STORE),
+            Serdes.String(), StateSerdes.periodRuns()).withCachingEnabled());
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+            Stores.persistentKeyValueStore(NetPayProcessor.TOMBSTONE_STORE),
+            Serdes.String(), StateSerdes.periodRuns()).withCachingEnabled());
+
+        // Sources, re-keyed by employeeId and repartitioned so both inputs are co-partitioned
+        KStream<String, byte[]> grossPay = builder
+            .stream(GROSS_PAY_TOPIC, Consumed.with(Serdes.String(), Serdes.ByteArray()).withName("gross-pay-source"))
+            .process(() -> new EmployeeRekeyProcessor("gross-pay"), Named.as("gross-pay-rekey"))
+            .repartition(repartitioned(GROSS_PAY_REPARTITION));
+
+        KStream<String, byte[]> employeeEvents = builder
+            .stream(EMPLOYEE_EVENTS_TOPIC, Consumed.with(Serdes.String(), Serdes.ByteArray()).withName("employee-events-source"))
+            .process(() -> new EmployeeRekeyProcessor("employee-events"), Named.as("employee-events-rekey"))
+            .repartition(repartitioned(EMPLOYEE_EVENTS_REPARTITION));
+
+        // Processors — each wired to its repartitioned source, sharing the per-task stores
+        KStream<String, byte[]> fromGrossPay = grossPay
+            .process(() -> new NetPayProcessor("gross-pay", coalesceWindow, catchUp, retainedPeriods, recomputeLimits), Named.as("gross-pay-processor"), STATE_STORES);
+        KStream<String, byte[]> fromEmployeeEvents = employeeEvents
+            .process(() -> new NetPayProcessor("employee-events", coalesceWindow, catchUp, retainedPeriods, recomputeLimits), Named.as("employee-events-processor"), STATE_STORES);
 
         // Sink
-        topology.addSink("net-pay-sink",
-            NET_PAY_TOPIC,
-            Serdes.String().serializer(), Serdes.String().serializer(),
-            "gross-pay-processor", "employee-events-processor");
+        fromGrossPay.merge(fromEmployeeEvents, Named.as("net-pay-merge"))
+            .to(NET_PAY_TOPIC, Produced.with(Serdes.String(), Serdes.ByteArray()).withName("net-pay-sink"));
 
-        return topology;
+        return builder.build();
+    }
+
+    /**
+     * Both repartition topics must have the same partition count to be co-partitioned.
+     * Left unset, Kafka Streams derives it from the source topics (3 in docker-compose).
+     */
+    private static Repartitioned<String, byte[]> repartitioned(String name) {
+        Repartitioned<String, byte[]> repartitioned = Repartitioned
+            .<String, byte[]>as(name)
+            .withKeySerde(Serdes.String())
+            .withValueSerde(Serdes.ByteArray());
+        String partitions = System.getenv("REPARTITION_PARTITIONS");
+        return partitions != null
+            ? repartitioned.withNumberOfPartitions(Integer.parseInt(partitions))
+            : repartitioned;
     }
 
     private static Properties buildConfig() {
@@ -403,11 +566,16 @@ public class NetPayApp {
             Serdes.StringSerde.class.getName());
         props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG,
             Serdes.StringSerde.class.getName());
-        // Process one record at a time for consistency
-        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 1);
+        // Stores are partitioned by employee, so threads can be scaled freely (tasks are the limit)
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG,
+            Integer.parseInt(envOrDefault("NUM_STREAM_THREADS", "1")));
+        String stateDir = System.getenv("STATE_DIR");
+        if (stateDir != null) {
+            props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir);
+        }
         // Commit interval — 1 second for near-real-time
         props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 1000);
-        // Start from earliest on fresh start — rebuilds in-memory state from full history
+        // Start from earliest when there are no committed offsets (first run or rebuild)
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         return props;
     }
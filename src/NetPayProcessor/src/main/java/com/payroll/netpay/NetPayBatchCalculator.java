@@ -0,0 +1,128 @@
+package com.payroll.netpay;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Batch net pay over columnar primitive arrays, for recomputing the whole workforce at once
+ * (tax table changes, period close) rather than one record at a time in NetPayProcessor.
+ *
+ * Each index i is one employee/period. Inputs are the same values computeAndEmit reads from the
+ * state stores: gross pay, whether there is a TaxConfig at all and, if so, its resolved values
+ * (FilingStatus ordinal, state code, additional withholdings), and the DeductionMap totals
+ * (computeFixedTotal / computePercentTotal(gross)). Like computeAndEmit, a row without a
+ * TaxConfig has no tax at all. Outputs are rounded exactly as in NetPayResult, and the
+ * arithmetic is the same as computeAndEmit, so results match it and TaxCalculator exactly.
+ *
+ * NetPayProcessor uses it to recompute each batch drained from its RecomputeQueue.
+ */
+public final class NetPayBatchCalculator {
+
+    // Ranges at or below this size are computed in a single fork-join task
+    private static final int PARALLEL_THRESHOLD = 16_384;
+
+    private NetPayBatchCalculator() {}
+
+    /**
+     * Column storage for a batch; inputs are filled by the caller, outputs by compute.
+     */
+    public static final class Batch {
+        public final int size;
+
+        // Inputs
+        public final double[] grossPay;
+        public final boolean[] hasTaxConfig;  // false: no tax, the remaining tax columns are ignored
+        public final byte[] filingStatus;     // TaxCalculator.FilingStatus ordinal
+        public final short[] stateCode;       // TaxCalculator.stateCode(...)
+        public final double[] additionalFederalWithholding;
+        public final double[] additionalStateWithholding;
+        public final double[] fixedDeductions;
+        public final double[] percentDeductions;
+
+        // Outputs
+        public final double[] federalTax;
+        public final double[] stateTax;
+        public final double[] totalTax;
+        public final double[] totalDeductions;
+        public final double[] netPay;
+
+        public Batch(int size) {
+            this.size = size;
+            grossPay = new double[size];
+            hasTaxConfig = new boolean[size];
+            filingStatus = new byte[size];
+            stateCode = new short[size];
+            additionalFederalWithholding = new double[size];
+            additionalStateWithholding = new double[size];
+            fixedDeductions = new double[size];
+            percentDeductions = new double[size];
+            federalTax = new double[size];
+            stateTax = new double[size];
+            totalTax = new double[size];
+            totalDeductions = new double[size];
+            netPay = new double[size];
+        }
+    }
+
+    /** Compute the whole batch on the calling thread. */
+    public static void compute(Batch batch) {
+        compute(batch, 0, batch.size);
+    }
+
+    /** Compute the batch split across the given fork-join pool. */
+    public static void computeParallel(Batch batch, ForkJoinPool pool) {
+        pool.invoke(new RangeTask(batch, 0, batch.size));
+    }
+
+    /** Compute the batch split across the common fork-join pool. */
+    public static void computeParallel(Batch batch) {
+        computeParallel(batch, ForkJoinPool.commonPool());
+    }
+
+    private static void compute(Batch b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            double gross = b.grossPay[i];
+            double federal = 0;
+            double state = 0;
+            double tax = 0;
+            if (b.hasTaxConfig[i]) {
+                federal = TaxCalculator.computeFederalTax(gross, b.filingStatus[i]);
+                state = TaxCalculator.computeStateTax(gross, b.stateCode[i]);
+                tax = federal + state + b.additionalFederalWithholding[i] + b.additionalStateWithholding[i];
+            }
+            double deductions = b.fixedDeductions[i] + b.percentDeductions[i];
+
+            b.federalTax[i] = roundTwo(federal);
+            b.stateTax[i] = roundTwo(state);
+            b.totalTax[i] = roundTwo(tax);
+            b.totalDeductions[i] = roundTwo(deductions);
+            b.netPay[i] = roundTwo(gross - tax - deductions);
+        }
+    }
+
+    private static double roundTwo(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private final Batch batch;
+        private final int from;
+        private final int to;
+
+        RangeTask(Batch batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                NetPayBatchCalculator.compute(batch, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(batch, from, mid), new RangeTask(batch, mid, to));
+        }
+    }
+}
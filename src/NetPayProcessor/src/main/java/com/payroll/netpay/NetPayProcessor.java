@@ -1,34 +1,62 @@
 package com.payroll.netpay;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.payroll.netpay.model.DeductionMap;
+import com.payroll.netpay.model.EmployeeEvent;
 import com.payroll.netpay.model.GrossPay;
 import com.payroll.netpay.model.NetPayResult;
 import com.payroll.netpay.model.TaxConfig;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.Cancellable;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.TaskId;
 import org.apache.kafka.streams.processor.api.Processor;
 import org.apache.kafka.streams.processor.api.ProcessorContext;
 import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Unified processor that handles both gross-pay and employee-events sources.
  *
- * State is kept in static ConcurrentHashMaps shared across all processor instances
- * rather than Kafka Streams partitioned state stores. This avoids the co-partitioning
- * problem: employee-gross-pay and employee-events have different key schemas, so the
- * same employee's data lands in different partitions/tasks, making per-task state stores
- * invisible across sources. Shared in-memory maps ensure all processors see the same
- * state regardless of partition assignment. Safe for this single-instance, single-thread POC.
+ * Both inputs arrive re-keyed by employeeId (see EmployeeRekeyProcessor) through repartition
+ * topics with the same partition count, so every record for an employee is processed by the
+ * same task. State therefore lives in that task's persistent key-value stores, which Kafka
+ * Streams backs with changelog topics and restores on restart or rebalance. This makes the
+ * topology safe to run with any number of stream threads and application instances.
+ *
+ * With a coalescing window, updates only mark the employee/period dirty and a wall-clock
+ * punctuator emits one result per dirty key per window, computed from the latest state.
+ * A burst of deduction or taxinfo events then produces a single output record per period.
+ * Tombstones are never delayed.
+ *
+ * The same dirty-key path is used while CatchUpMonitor reports a rebuild replay in progress:
+ * historical intermediate results are not emitted at all, and once the replay has caught up
+ * the final result for each touched employee/period is flushed and live emission resumes.
+ *
+ * With a retention window of N periods, gross pay for periods before the last N (counting the
+ * current one) is evicted by a wall-clock punctuator, so the store holds at most N periods per
+ * active employee plus any future ones. Their final results remain in the compacted output
+ * topic, and the evicted period numbers are kept as compact runs in a separate store so that
+ * deactivation still tombstones them. Those tombstones are sent by a punctuator in bounded
+ * batches, so deactivating a long-lived employee does not flood a single process() call.
+ * Gross pay arriving late for an already evicted period is still stored and computed as usual,
+ * then evicted again by the next sweep.
+ *
+ * A tax or deduction change does not recompute inline. It queues the employee's open periods
+ * (the current one and, with openPeriods > 1, the ones before it) in a RecomputeQueue, which a
+ * punctuator works off in bounded batches. Input latency stays flat under bursts of changes;
+ * only when the queue is over capacity does processing a change drain a batch inline.
  */
-public class NetPayProcessor implements Processor<String, String, String, String> {
+public class NetPayProcessor implements Processor<String, byte[], String, byte[]> {
 
     private static final Logger log = LoggerFactory.getLogger(NetPayProcessor.class);
     private static final ObjectMapper mapper = new ObjectMapper();
@@ -37,33 +65,139 @@ public class NetPayProcessor implements Processor<String, String, String, String
     private static final long PAY_PERIOD_EPOCH_MS = 1704067200000L;
     private static final long PAY_PERIOD_DURATION_MS = 14L * 24 * 60 * 60 * 1000; // 14 days
 
-    // Shared in-memory state — keyed by employeeId:payPeriod for gross pay, employeeId for others
-    static final ConcurrentHashMap<String, String> grossPayStore = new ConcurrentHashMap<>();
-    static final ConcurrentHashMap<String, String> taxConfigStore = new ConcurrentHashMap<>();
-    static final ConcurrentHashMap<String, String> deductionStore = new ConcurrentHashMap<>();
-    // Tracks deactivated employees so late-arriving gross pay events emit tombstones instead of data.
-    // Handles the replay race condition where employee-gross-pay events arrive after the deactivation.
-    // Cleared when an employee.created event re-uses the same ID (won't happen with GUIDs, but safe).
-    static final Set<String> deactivatedEmployees = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // Per-task state stores, all keyed by employeeId
+    static final String GROSS_PAY_STORE = "gross-pay-store";
+    static final String TAX_CONFIG_STORE = "tax-config-store";
+    static final String DEDUCTION_STORE = "deduction-store";
+    // Deactivated employees (value: deactivation time) so late-arriving gross pay events emit
+    // tombstones instead of data. GUIDs are never reused, so entries are never removed.
+    static final String DEACTIVATED_STORE = "deactivated-store";
+    // In-memory copy of each task's deactivated-store, checked on every gross pay record. Shared
+    // by the task's two processor instances, which run on the same stream thread.
+    private static final Map<TaskId, EmployeeIdSet> deactivatedByTask = new ConcurrentHashMap<>();
+    // Employee/period results awaiting the next coalesced flush (key: employeeId|period,
+    // value: time first marked). Changelogged so pending results survive a restart.
+    static final String DIRTY_STORE = "net-pay-dirty-store";
+    private static final char DIRTY_KEY_SEPARATOR = '|';
+    // Dirty keys read per store iterator; after a rebuild the store covers all of history
+    private static final int DIRTY_FLUSH_BATCH = 1000;
+    // Employee/periods queued for recomputation after a tax or deduction change (see RecomputeQueue)
+    static final String RECOMPUTE_STORE = "net-pay-recompute-store";
+    // How often a non-coalescing processor checks whether catch-up has finished
+    private static final Duration CATCH_UP_CHECK_INTERVAL = Duration.ofSeconds(1);
+    // How often the retention sweep checks whether there is anything to evict
+    private static final Duration RETENTION_CHECK_INTERVAL = Duration.ofMinutes(1);
+    // Employees rewritten per store iterator, so a sweep never holds the whole store in memory
+    private static final int EVICTION_BATCH = 1000;
+    // Periods evicted by the retention sweep, per employee, until the employee is deactivated
+    static final String EVICTED_STORE = "net-pay-evicted-store";
+    // Evicted periods of deactivated employees whose tombstones have not been sent yet
+    static final String TOMBSTONE_STORE = "net-pay-tombstone-store";
+    // How often, and how many, pending tombstones for evicted periods are sent
+    private static final Duration TOMBSTONE_INTERVAL = Duration.ofSeconds(1);
+    private static final int TOMBSTONE_BATCH = 1000;
 
     private final String sourceName;
-    private ProcessorContext<String, String> context;
+    private final Duration coalesceWindow;
+    private final CatchUpMonitor catchUp;
+    private final int retainedPeriods;
+    private final RecomputeQueue.Limits recomputeLimits;
+    private ProcessorContext<String, byte[]> context;
+    private KeyValueStore<String, GrossPayPeriods> grossPayStore;
+    private KeyValueStore<String, TaxConfig> taxConfigStore;
+    private KeyValueStore<String, DeductionMap> deductionStore;
+    private KeyValueStore<String, Long> deactivatedStore;
+    private EmployeeIdSet deactivatedEmployees;
+    private KeyValueStore<String, Long> dirtyStore;
+    private KeyValueStore<String, PeriodRuns> evictedStore;
+    private KeyValueStore<String, PeriodRuns> tombstoneStore;
+    private Cancellable catchUpPunctuator;
+    // Only the employee-events processor, which handles tax and deduction changes, has a queue
+    private RecomputeQueue recomputeQueue;
+    // Current period of the last completed retention sweep, and whether an expired period was
+    // stored since (late gross pay), which both make the next check sweep
+    private long lastSweptPeriod = -1;
+    private boolean expiredPeriodStored;
 
     /**
      * @param sourceName identifies which source topic this processor instance handles:
      *                   "gross-pay" or "employee-events"
      */
     public NetPayProcessor(String sourceName) {
+        this(sourceName, Duration.ZERO, CatchUpMonitor.live(), 0, RecomputeQueue.Limits.currentPeriod());
+    }
+
+    /**
+     * @param coalesceWindow  how often dirty results are emitted; zero emits on every update
+     * @param catchUp         tells whether a startup replay is still catching up
+     * @param retainedPeriods pay periods kept per employee, including the current one; zero keeps all
+     * @param recomputeLimits which periods a tax or deduction change recomputes, and how fast
+     */
+    NetPayProcessor(String sourceName, Duration coalesceWindow, CatchUpMonitor catchUp, int retainedPeriods,
+                    RecomputeQueue.Limits recomputeLimits) {
         this.sourceName = sourceName;
+        this.coalesceWindow = coalesceWindow;
+        this.catchUp = catchUp;
+        this.retainedPeriods = retainedPeriods;
+        this.recomputeLimits = recomputeLimits;
     }
 
     @Override
-    public void init(ProcessorContext<String, String> context) {
+    public void init(ProcessorContext<String, byte[]> context) {
         this.context = context;
+        this.grossPayStore = context.getStateStore(GROSS_PAY_STORE);
+        this.taxConfigStore = context.getStateStore(TAX_CONFIG_STORE);
+        this.deductionStore = context.getStateStore(DEDUCTION_STORE);
+        this.deactivatedStore = context.getStateStore(DEACTIVATED_STORE);
+        this.deactivatedEmployees = deactivatedByTask.computeIfAbsent(context.taskId(), taskId -> loadDeactivated());
+        this.dirtyStore = context.getStateStore(DIRTY_STORE);
+        this.evictedStore = context.getStateStore(EVICTED_STORE);
+        this.tombstoneStore = context.getStateStore(TOMBSTONE_STORE);
+
+        if (!coalesceWindow.isZero()) {
+            context.schedule(coalesceWindow, PunctuationType.WALL_CLOCK_TIME, timestamp -> punctuate());
+        } else {
+            // Flushes what catch-up (or an earlier run) left dirty, then cancels itself
+            catchUpPunctuator = context.schedule(CATCH_UP_CHECK_INTERVAL, PunctuationType.WALL_CLOCK_TIME,
+                timestamp -> punctuate());
+        }
+        // Both processors of a task share the stores, so only one of them sweeps
+        if (retainedPeriods > 0 && "gross-pay".equals(sourceName)) {
+            context.schedule(RETENTION_CHECK_INTERVAL, PunctuationType.WALL_CLOCK_TIME,
+                timestamp -> evictExpiredPeriods());
+        }
+        if (!"gross-pay".equals(sourceName)) {
+            recomputeQueue = new RecomputeQueue(context.getStateStore(RECOMPUTE_STORE), context, recomputeLimits);
+            context.schedule(recomputeLimits.interval, PunctuationType.WALL_CLOCK_TIME,
+                timestamp -> recomputeQueue.drain(this::recompute));
+            context.schedule(TOMBSTONE_INTERVAL, PunctuationType.WALL_CLOCK_TIME,
+                timestamp -> sendEvictedTombstones());
+        }
     }
 
     @Override
-    public void process(Record<String, String> record) {
+    public void close() {
+        deactivatedByTask.remove(context.taskId(), deactivatedEmployees);
+        if (recomputeQueue != null) {
+            recomputeQueue.close();
+        }
+    }
+
+    /** Load the restored deactivated-store into memory; runs once per task initialization. */
+    private EmployeeIdSet loadDeactivated() {
+        EmployeeIdSet ids = new EmployeeIdSet(true);
+        try (KeyValueIterator<String, Long> it = deactivatedStore.all()) {
+            while (it.hasNext()) {
+                ids.add(it.next().key);
+            }
+        }
+        log.info("Loaded {} deactivated employees for task {} ({} bytes)",
+            ids.size(), context.taskId(), ids.memoryBytes());
+        return ids;
+    }
+
+    @Override
+    public void process(Record<String, byte[]> record) {
         if (record.value() == null) return;
 
         try {
@@ -77,181 +211,365 @@ public class NetPayProcessor implements Processor<String, String, String, String
         }
     }
 
-    private void handleGrossPay(Record<String, String> record) throws Exception {
-        JsonNode keyNode = mapper.readTree(record.key());
-        JsonNode valueNode = mapper.readTree(record.value());
-
-        String employeeId = keyNode.get("EMPLOYEE_ID").asText();
-        long payPeriodNumber = keyNode.get("PAY_PERIOD_NUMBER").asLong();
+    private void handleGrossPay(Record<String, byte[]> record) throws Exception {
+        GrossPay gp = mapper.readValue(record.value(), GrossPay.class);
+        String employeeId = gp.getEmployeeId();
+        long payPeriodNumber = gp.getPayPeriodNumber();
 
         // If this employee was deactivated, emit a tombstone instead of net pay
         if (deactivatedEmployees.contains(employeeId)) {
-            String outputKey = mapper.writeValueAsString(
-                mapper.createObjectNode()
-                    .put("EMPLOYEE_ID", employeeId)
-                    .put("PAY_PERIOD_NUMBER", payPeriodNumber)
-            );
-            context.forward(new Record<>(outputKey, null, System.currentTimeMillis()));
+            context.forward(new Record<>(outputKey(employeeId, payPeriodNumber), null, System.currentTimeMillis()));
             log.info("Gross pay skipped (deactivated): employee={}, period={}, tombstone emitted", employeeId, payPeriodNumber);
             return;
         }
 
-        GrossPay gp = new GrossPay();
-        gp.setEmployeeId(employeeId);
-        gp.setPayPeriodNumber(payPeriodNumber);
-        gp.setPayRate(valueNode.path("PAY_RATE").asDouble(0));
-        gp.setPayType(valueNode.path("PAY_TYPE").asText("1"));
-        gp.setGrossPay(valueNode.path("GROSS_PAY").asDouble(0));
-        gp.setTotalHoursWorked(valueNode.path("TOTAL_HOURS_WORKED").asDouble(0));
-        gp.setPayPeriodStart(valueNode.path("PAY_PERIOD_START").asText(""));
-        gp.setPayPeriodEnd(valueNode.path("PAY_PERIOD_END").asText(""));
-
-        String storeKey = employeeId + ":" + payPeriodNumber;
-        grossPayStore.put(storeKey, mapper.writeValueAsString(gp));
+        GrossPayPeriods periods = grossPayStore.get(employeeId);
+        if (periods == null) {
+            periods = new GrossPayPeriods();
+        }
+        periods.put(gp);
+        grossPayStore.put(employeeId, periods);
+        if (retainedPeriods > 0 && payPeriodNumber < oldestRetainedPeriod()) {
+            expiredPeriodStored = true;
+        }
 
         log.info("Gross pay updated: employee={}, period={}, gross={}", employeeId, payPeriodNumber, gp.getGrossPay());
-        computeAndEmit(employeeId, payPeriodNumber);
+        emit(employeeId, gp);
     }
 
-    private void handleEmployeeEvent(Record<String, String> record) throws Exception {
-        JsonNode envelope = mapper.readTree(record.value());
+    private void handleEmployeeEvent(Record<String, byte[]> record) throws Exception {
+        // Value is the EmployeeEvent extracted from the CloudEvent by EmployeeRekeyProcessor
+        EmployeeEvent event = mapper.readValue(record.value(), EmployeeEvent.class);
+        String eventType = event.getEventType();
+        if (eventType == null) return;
 
-        // Dapr CloudEvent: data is a stringified JSON
-        String dataStr = envelope.path("data").asText(null);
-        if (dataStr == null) {
-            // data might be an object (non-Dapr path)
-            JsonNode dataNode = envelope.path("data");
-            if (dataNode.isMissingNode() || dataNode.isNull()) return;
-            dataStr = dataNode.toString();
-        }
-
-        JsonNode data = mapper.readTree(dataStr);
-
-        // Extract event type from DomainEvents[0].EventType
-        JsonNode domainEvents = data.path("DomainEvents");
-        if (!domainEvents.isArray() || domainEvents.isEmpty()) return;
-        String eventType = domainEvents.get(0).path("EventType").asText("");
-
-        if ("employee.created".equals(eventType)) {
-            // No-op here. The pre-scan already built the correct deactivated set from
-            // the full event history. Removing from the set during topology replay would
-            // undo the pre-scan's work (old employee.created events arrive before their
-            // deactivation events due to cross-partition ordering). New employees use
-            // fresh GUIDs and are never in the deactivated set, so no removal needed.
-        } else if ("employee.deactivated".equals(eventType)) {
-            handleEmployeeDeactivated(data);
+        if ("employee.deactivated".equals(eventType)) {
+            handleEmployeeDeactivated(event);
         } else if (eventType.startsWith("taxinfo.")) {
-            handleTaxInfoEvent(data);
+            handleTaxInfoEvent(event);
         } else if (eventType.startsWith("deduction.")) {
-            handleDeductionEvent(data, eventType);
+            handleDeductionEvent(event, eventType);
         }
-        // employee.created/updated and timeentry.* are handled by gross pay
+        // employee.created/updated and timeentry.* are dropped by EmployeeRekeyProcessor
     }
 
-    private void handleEmployeeDeactivated(JsonNode data) throws Exception {
-        String employeeId = data.path("Id").asText(null);
+    private void handleEmployeeDeactivated(EmployeeEvent event) throws Exception {
+        String employeeId = event.getId();
         if (employeeId == null) return;
 
         // Mark as deactivated so late-arriving gross pay events also emit tombstones
+        deactivatedStore.put(employeeId, System.currentTimeMillis());
         deactivatedEmployees.add(employeeId);
 
-        // Find all pay periods for this employee in the gross pay store
-        List<String> keysToRemove = new ArrayList<>();
-        for (String key : grossPayStore.keySet()) {
-            if (key.startsWith(employeeId + ":")) {
-                keysToRemove.add(key);
-            }
-        }
+        // All pay periods for this employee live under a single entry
+        GrossPayPeriods periods = grossPayStore.delete(employeeId);
+        int periodCount = periods != null ? periods.size() : 0;
 
         // Emit tombstones (null value) for each pay period — removes rows from ksqlDB tables
-        for (String key : keysToRemove) {
-            long payPeriodNumber = Long.parseLong(key.substring(key.indexOf(':') + 1));
-            String outputKey = mapper.writeValueAsString(
-                mapper.createObjectNode()
-                    .put("EMPLOYEE_ID", employeeId)
-                    .put("PAY_PERIOD_NUMBER", payPeriodNumber)
-            );
-            context.forward(new Record<>(outputKey, null, System.currentTimeMillis()));
-            grossPayStore.remove(key);
+        for (int i = 0; i < periodCount; i++) {
+            context.forward(new Record<>(outputKey(employeeId, periods.periodAt(i)), null, System.currentTimeMillis()));
+        }
+
+        // Evicted periods still have rows too; their tombstones go out in batches (see sendEvictedTombstones)
+        PeriodRuns evicted = evictedStore.delete(employeeId);
+        if (evicted != null) {
+            tombstoneStore.put(employeeId, evicted);
         }
 
         // Clean up other stores
-        taxConfigStore.remove(employeeId);
-        deductionStore.remove(employeeId);
+        taxConfigStore.delete(employeeId);
+        deductionStore.delete(employeeId);
 
-        log.info("Employee deactivated: employee={}, tombstones emitted for {} pay periods",
-            employeeId, keysToRemove.size());
+        log.info("Employee deactivated: employee={}, tombstones emitted for {} pay periods, {} evicted periods queued",
+            employeeId, periodCount, evicted != null ? evicted.periodCount() : 0);
     }
 
-    private void handleTaxInfoEvent(JsonNode data) throws Exception {
-        String employeeId = data.path("EmployeeId").asText(null);
+    private void handleTaxInfoEvent(EmployeeEvent event) throws Exception {
+        String employeeId = event.getEmployeeId();
         if (employeeId == null) return;
 
         TaxConfig tc = new TaxConfig(
             employeeId,
-            data.path("FederalFilingStatus").asText("Single"),
-            data.path("State").asText(""),
-            data.path("AdditionalFederalWithholding").asDouble(0),
-            data.path("AdditionalStateWithholding").asDouble(0)
+            event.getFederalFilingStatus(),
+            event.getState(),
+            event.getAdditionalFederalWithholding(),
+            event.getAdditionalStateWithholding()
         );
 
-        taxConfigStore.put(employeeId, mapper.writeValueAsString(tc));
+        taxConfigStore.put(employeeId, tc);
         log.info("Tax config updated: employee={}, filing={}, state={}", employeeId, tc.getFederalFilingStatus(), tc.getState());
 
-        // Recompute for current pay period
-        long currentPeriod = getCurrentPayPeriod();
-        String storeKey = employeeId + ":" + currentPeriod;
-        if (grossPayStore.containsKey(storeKey)) {
-            computeAndEmit(employeeId, currentPeriod);
-        }
+        scheduleRecompute(employeeId);
     }
 
-    private void handleDeductionEvent(JsonNode data, String eventType) throws Exception {
-        String employeeId = data.path("EmployeeId").asText(null);
-        String deductionId = data.path("Id").asText(null);
+    private void handleDeductionEvent(EmployeeEvent event, String eventType) throws Exception {
+        String employeeId = event.getEmployeeId();
+        String deductionId = event.getId();
         if (employeeId == null || deductionId == null) return;
 
         // Load existing deduction map or create new
-        DeductionMap dm;
-        String existing = deductionStore.get(employeeId);
-        if (existing != null) {
-            dm = mapper.readValue(existing, DeductionMap.class);
-        } else {
+        DeductionMap dm = deductionStore.get(employeeId);
+        if (dm == null) {
             dm = new DeductionMap(employeeId);
         }
 
         if ("deduction.deactivated".equals(eventType)) {
             // Mark as inactive but keep in map
-            dm.putDeduction(deductionId,
-                dm.getDeductions().containsKey(deductionId)
-                    ? dm.getDeductions().get(deductionId).getAmount() : 0,
-                dm.getDeductions().containsKey(deductionId)
-                    && dm.getDeductions().get(deductionId).isPercentage(),
+            DeductionMap.DeductionEntry existing = dm.getDeduction(deductionId);
+            dm = dm.withDeduction(deductionId,
+                existing != null ? existing.getAmount() : 0,
+                existing != null && existing.isPercentage(),
                 false);
         } else {
-            dm.putDeduction(deductionId,
-                data.path("Amount").asDouble(0),
-                data.path("IsPercentage").asBoolean(false),
-                data.path("IsActive").asBoolean(true));
+            dm = dm.withDeduction(deductionId,
+                event.getAmount(),
+                event.isPercentage(),
+                event.isActive());
         }
 
-        deductionStore.put(employeeId, mapper.writeValueAsString(dm));
+        deductionStore.put(employeeId, dm);
         log.info("Deduction updated: employee={}, deduction={}, event={}", employeeId, deductionId, eventType);
 
-        // Recompute for current pay period
+        scheduleRecompute(employeeId);
+    }
+
+    /** Queue the employee's open pay periods that have gross pay for recomputation. */
+    private void scheduleRecompute(String employeeId) {
+        GrossPayPeriods periods = grossPayStore.get(employeeId);
+        if (periods == null) return;
+
         long currentPeriod = getCurrentPayPeriod();
-        String storeKey = employeeId + ":" + currentPeriod;
-        if (grossPayStore.containsKey(storeKey)) {
-            computeAndEmit(employeeId, currentPeriod);
+        long oldestOpen = currentPeriod - recomputeLimits.openPeriods + 1;
+        for (int i = 0; i < periods.size(); i++) {
+            long payPeriodNumber = periods.periodAt(i);
+            if (payPeriodNumber >= oldestOpen && payPeriodNumber <= currentPeriod) {
+                recomputeQueue.enqueue(employeeId, payPeriodNumber);
+            }
         }
+        recomputeQueue.relieveBackpressure(this::recompute);
     }
 
-    private void computeAndEmit(String employeeId, long payPeriodNumber) throws Exception {
-        String storeKey = employeeId + ":" + payPeriodNumber;
-        String gpJson = grossPayStore.get(storeKey);
-        if (gpJson == null) return;
+    /**
+     * Recompute a batch of queued employee/periods from the latest state, skipping any whose
+     * gross pay is gone. When results are emitted directly, the batch is computed column-wise
+     * by NetPayBatchCalculator.
+     */
+    private void recompute(String[] employeeIds, long[] payPeriodNumbers) throws Exception {
+        String[] ids = new String[employeeIds.length];
+        GrossPay[] grossPays = new GrossPay[employeeIds.length];
+        int rows = 0;
+        for (int i = 0; i < employeeIds.length; i++) {
+            GrossPayPeriods periods = grossPayStore.get(employeeIds[i]);
+            GrossPay gp = periods != null ? periods.get(payPeriodNumbers[i]) : null;
+            if (gp == null) continue;
+            if (!coalesceWindow.isZero() || catchUp.isCatchingUp()) {
+                emit(employeeIds[i], gp);
+                continue;
+            }
+            ids[rows] = employeeIds[i];
+            grossPays[rows] = gp;
+            rows++;
+        }
+        if (rows == 0) return;
+
+        NetPayBatchCalculator.Batch batch = new NetPayBatchCalculator.Batch(rows);
+        for (int i = 0; i < rows; i++) {
+            double grossPay = grossPays[i].getGrossPay();
+            batch.grossPay[i] = grossPay;
+            TaxConfig tc = taxConfigStore.get(ids[i]);
+            if (tc != null) {
+                batch.hasTaxConfig[i] = true;
+                batch.filingStatus[i] = (byte) tc.getFilingStatus().ordinal();
+                batch.stateCode[i] = (short) tc.getStateCode();
+                batch.additionalFederalWithholding[i] = tc.getAdditionalFederalWithholding();
+                batch.additionalStateWithholding[i] = tc.getAdditionalStateWithholding();
+            }
+            DeductionMap dm = deductionStore.get(ids[i]);
+            if (dm != null) {
+                batch.fixedDeductions[i] = dm.computeFixedTotal();
+                batch.percentDeductions[i] = dm.computePercentTotal(grossPay);
+            }
+        }
+        NetPayBatchCalculator.compute(batch);
+
+        for (int i = 0; i < rows; i++) {
+            NetPayResult result = newResult(ids[i], grossPays[i]);
+            result.setFederalTax(batch.federalTax[i]);
+            result.setStateTax(batch.stateTax[i]);
+            result.setAdditionalFederalWithholding(roundTwo(batch.additionalFederalWithholding[i]));
+            result.setAdditionalStateWithholding(roundTwo(batch.additionalStateWithholding[i]));
+            result.setTotalTax(batch.totalTax[i]);
+            result.setTotalFixedDeductions(roundTwo(batch.fixedDeductions[i]));
+            result.setTotalPercentDeductions(roundTwo(batch.percentDeductions[i]));
+            result.setTotalDeductions(batch.totalDeductions[i]);
+            result.setNetPay(batch.netPay[i]);
+            forward(result);
+        }
+    }
+
+    /** Emit now, or mark dirty for the next flush when coalescing or catching up. */
+    private void emit(String employeeId, GrossPay gp) throws Exception {
+        if (coalesceWindow.isZero() && !catchUp.isCatchingUp()) {
+            computeAndEmit(employeeId, gp);
+            return;
+        }
+        dirtyStore.putIfAbsent(employeeId + DIRTY_KEY_SEPARATOR + gp.getPayPeriodNumber(), System.currentTimeMillis());
+    }
+
+    private void punctuate() {
+        if (catchUp.isCatchingUp()) return;
+
+        flushDirty();
+        if (catchUpPunctuator != null) {
+            catchUpPunctuator.cancel();
+            catchUpPunctuator = null;
+        }
+    }
 
-        GrossPay gp = mapper.readValue(gpJson, GrossPay.class);
+    /**
+     * Emit the latest result for every dirty employee/period. Keys whose gross pay is gone
+     * (employee deactivated since) are dropped; their tombstones were already sent.
+     * Keys are read DIRTY_FLUSH_BATCH at a time, resuming after the last one taken.
+     */
+    private void flushDirty() {
+        String from = null;
+        boolean more = true;
+        while (more) {
+            List<String> keys = new ArrayList<>();
+            try (KeyValueIterator<String, Long> it = dirtyStore.range(from, null)) {
+                while (it.hasNext() && keys.size() < DIRTY_FLUSH_BATCH) {
+                    keys.add(it.next().key);
+                }
+                more = it.hasNext();
+            }
+            if (!keys.isEmpty()) {
+                // The key with a NUL appended sorts right after it
+                from = keys.get(keys.size() - 1) + '\0';
+            }
+            keys.forEach(this::flushDirtyKey);
+        }
+    }
+
+    private void flushDirtyKey(String key) {
+        dirtyStore.delete(key);
+        int sep = key.lastIndexOf(DIRTY_KEY_SEPARATOR);
+        String employeeId = key.substring(0, sep);
+        long payPeriodNumber = Long.parseLong(key.substring(sep + 1));
+
+        GrossPayPeriods periods = grossPayStore.get(employeeId);
+        GrossPay gp = periods != null ? periods.get(payPeriodNumber) : null;
+        if (gp == null) return;
+
+        try {
+            computeAndEmit(employeeId, gp);
+        } catch (Exception e) {
+            log.error("Error emitting coalesced result for {}: {}", key, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Evict gross pay for periods outside the retention window. Only sweeps the store once the
+     * current period has moved on or late gross pay stored an expired period, and never while
+     * catching up, so the replay's final results are still flushed for every period.
+     */
+    private void evictExpiredPeriods() {
+        if (catchUp.isCatchingUp()) return;
+        long currentPeriod = getCurrentPayPeriod();
+        if (currentPeriod == lastSweptPeriod && !expiredPeriodStored) return;
+
+        // Pending results for periods about to be evicted go out first
+        flushDirty();
+        expiredPeriodStored = false;
+
+        long oldestRetained = oldestRetainedPeriod();
+        int employees = 0;
+        int evicted = 0;
+        String from = null;
+        boolean more = true;
+        while (more) {
+            List<KeyValue<String, GrossPayPeriods>> changed = new ArrayList<>();
+            more = false;
+            try (KeyValueIterator<String, GrossPayPeriods> it = grossPayStore.range(from, null)) {
+                while (it.hasNext()) {
+                    KeyValue<String, GrossPayPeriods> entry = it.next();
+                    if (entry.value.isEmpty() || entry.value.periodAt(0) >= oldestRetained) continue;
+                    recordEvicted(entry.key, entry.value, oldestRetained);
+                    evicted += entry.value.removeBefore(oldestRetained);
+                    changed.add(entry);
+                    if (changed.size() == EVICTION_BATCH) {
+                        // Resume right after this key: the key with a NUL appended sorts next
+                        from = entry.key + '\0';
+                        more = it.hasNext();
+                        break;
+                    }
+                }
+            }
+            for (KeyValue<String, GrossPayPeriods> entry : changed) {
+                if (entry.value.isEmpty()) {
+                    grossPayStore.delete(entry.key);
+                } else {
+                    grossPayStore.put(entry.key, entry.value);
+                }
+            }
+            employees += changed.size();
+        }
+
+        lastSweptPeriod = currentPeriod;
+        log.info("Retention sweep: evicted {} pay periods before {} from {} employees",
+            evicted, oldestRetained, employees);
+    }
+
+    /** Add the employee's periods before {@code oldestRetained} to its evicted runs. */
+    private void recordEvicted(String employeeId, GrossPayPeriods periods, long oldestRetained) {
+        PeriodRuns runs = evictedStore.get(employeeId);
+        if (runs == null) {
+            runs = new PeriodRuns();
+        }
+        for (int i = 0; i < periods.size() && periods.periodAt(i) < oldestRetained; i++) {
+            runs.add(periods.periodAt(i), periods.periodAt(i));
+        }
+        evictedStore.put(employeeId, runs);
+    }
+
+    /**
+     * Send up to TOMBSTONE_BATCH tombstones for evicted periods of deactivated employees,
+     * resuming from where the last batch stopped; the store entry shrinks as it is worked off.
+     */
+    private void sendEvictedTombstones() {
+        int budget = TOMBSTONE_BATCH;
+        List<KeyValue<String, PeriodRuns>> pending = new ArrayList<>();
+        try (KeyValueIterator<String, PeriodRuns> it = tombstoneStore.all()) {
+            long queued = 0;
+            while (it.hasNext() && queued < budget) {
+                KeyValue<String, PeriodRuns> entry = it.next();
+                pending.add(entry);
+                queued += entry.value.periodCount();
+            }
+        }
+
+        for (KeyValue<String, PeriodRuns> entry : pending) {
+            long[] batch = entry.value.poll(budget);
+            budget -= batch.length;
+            try {
+                for (long payPeriodNumber : batch) {
+                    context.forward(new Record<>(outputKey(entry.key, payPeriodNumber), null, System.currentTimeMillis()));
+                }
+            } catch (Exception e) {
+                log.error("Error emitting evicted-period tombstones for {}: {}", entry.key, e.getMessage(), e);
+            }
+            if (entry.value.isEmpty()) {
+                tombstoneStore.delete(entry.key);
+            } else {
+                tombstoneStore.put(entry.key, entry.value);
+            }
+        }
+    }
+
+    private long oldestRetainedPeriod() {
+        return getCurrentPayPeriod() - retainedPeriods + 1;
+    }
+
+    private void computeAndEmit(String employeeId, GrossPay gp) throws Exception {
         double grossPay = gp.getGrossPay();
 
         // Load tax config (may not exist yet)
@@ -259,11 +577,10 @@ public class NetPayProcessor implements Processor<String, String, String, String
         double stateTax = 0;
         double addlFederal = 0;
         double addlState = 0;
-        String tcJson = taxConfigStore.get(employeeId);
-        if (tcJson != null) {
-            TaxConfig tc = mapper.readValue(tcJson, TaxConfig.class);
-            federalTax = TaxCalculator.computeFederalTax(grossPay, tc.getFederalFilingStatus());
-            stateTax = TaxCalculator.computeStateTax(grossPay, tc.getState());
+        TaxConfig tc = taxConfigStore.get(employeeId);
+        if (tc != null) {
+            federalTax = TaxCalculator.computeFederalTax(grossPay, tc.getFilingStatus());
+            stateTax = TaxCalculator.computeStateTax(grossPay, tc.getStateCode());
             addlFederal = tc.getAdditionalFederalWithholding();
             addlState = tc.getAdditionalStateWithholding();
         }
@@ -273,9 +590,8 @@ public class NetPayProcessor implements Processor<String, String, String, String
         // Load deductions
         double fixedDeductions = 0;
         double percentDeductions = 0;
-        String dmJson = deductionStore.get(employeeId);
-        if (dmJson != null) {
-            DeductionMap dm = mapper.readValue(dmJson, DeductionMap.class);
+        DeductionMap dm = deductionStore.get(employeeId);
+        if (dm != null) {
             fixedDeductions = dm.computeFixedTotal();
             percentDeductions = dm.computePercentTotal(grossPay);
         }
@@ -283,9 +599,7 @@ public class NetPayProcessor implements Processor<String, String, String, String
 
         double netPay = grossPay - totalTax - totalDeductions;
 
-        // Build result
-        NetPayResult result = new NetPayResult();
-        result.setGrossPay(roundTwo(grossPay));
+        NetPayResult result = newResult(employeeId, gp);
         result.setFederalTax(roundTwo(federalTax));
         result.setStateTax(roundTwo(stateTax));
         result.setAdditionalFederalWithholding(roundTwo(addlFederal));
@@ -295,25 +609,41 @@ public class NetPayProcessor implements Processor<String, String, String, String
         result.setTotalPercentDeductions(roundTwo(percentDeductions));
         result.setTotalDeductions(roundTwo(totalDeductions));
         result.setNetPay(roundTwo(netPay));
+        forward(result);
+    }
+
+    /** A result with everything but the tax and deduction amounts filled in from the gross pay. */
+    private static NetPayResult newResult(String employeeId, GrossPay gp) {
+        NetPayResult result = new NetPayResult();
+        result.setGrossPay(roundTwo(gp.getGrossPay()));
         result.setPayRate(gp.getPayRate());
         result.setPayType(gp.getPayType());
         result.setTotalHoursWorked(gp.getTotalHoursWorked());
         result.setPayPeriodStart(gp.getPayPeriodStart());
         result.setPayPeriodEnd(gp.getPayPeriodEnd());
         result.setEmployeeId(employeeId);
-        result.setPayPeriodNumber(payPeriodNumber);
+        result.setPayPeriodNumber(gp.getPayPeriodNumber());
+        return result;
+    }
+
+    private void forward(NetPayResult result) throws Exception {
+        byte[] outputValue = mapper.writeValueAsBytes(result);
 
-        // Output key: {"EMPLOYEE_ID":"...","PAY_PERIOD_NUMBER":55}
-        String outputKey = mapper.writeValueAsString(
+        context.forward(new Record<>(outputKey(result.getEmployeeId(), result.getPayPeriodNumber()),
+            outputValue, System.currentTimeMillis()));
+        log.info("Net pay emitted: employee={}, period={}, gross={}, net={}",
+            result.getEmployeeId(), result.getPayPeriodNumber(), result.getGrossPay(), result.getNetPay());
+    }
+
+    /**
+     * Output key: {"EMPLOYEE_ID":"...","PAY_PERIOD_NUMBER":55}
+     */
+    private static String outputKey(String employeeId, long payPeriodNumber) throws Exception {
+        return mapper.writeValueAsString(
             mapper.createObjectNode()
                 .put("EMPLOYEE_ID", employeeId)
                 .put("PAY_PERIOD_NUMBER", payPeriodNumber)
         );
-        String outputValue = mapper.writeValueAsString(result);
-
-        context.forward(new Record<>(outputKey, outputValue, System.currentTimeMillis()));
-        log.info("Net pay emitted: employee={}, period={}, gross={}, net={}",
-            employeeId, payPeriodNumber, grossPay, result.getNetPay());
     }
 
     static long getCurrentPayPeriod() {
@@ -0,0 +1,141 @@
+package com.payroll.netpay;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Reads a topic from the beginning up to the end offsets at the time of the call, with the
+ * partitions split round-robin across several consumers, one per thread.
+ *
+ * Records are handed over as raw bytes so callers can pre-filter cheaply and only parse
+ * records that can possibly match. The handler is called concurrently from all workers.
+ */
+final class ParallelTopicScan {
+
+    interface RecordHandler {
+        void handle(ConsumerRecord<byte[], byte[]> record);
+    }
+
+    private ParallelTopicScan() {}
+
+    /**
+     * @param workers maximum number of consumers; capped at the partition count
+     * @return number of records scanned
+     */
+    static long scan(String bootstrapServers, String topic, String groupId, int workers,
+                     RecordHandler handler) throws Exception {
+        List<TopicPartition> partitions;
+        try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(consumerProps(bootstrapServers, groupId))) {
+            partitions = consumer.partitionsFor(topic)
+                .stream()
+                .map(pi -> new TopicPartition(pi.topic(), pi.partition()))
+                .collect(Collectors.toList());
+        }
+
+        int workerCount = Math.max(1, Math.min(workers, partitions.size()));
+        List<List<TopicPartition>> groups = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (int i = 0; i < partitions.size(); i++) {
+            groups.get(i % workerCount).add(partitions.get(i));
+        }
+
+        AtomicLong scanned = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<TopicPartition> group : groups) {
+                futures.add(executor.submit(() -> {
+                    scanned.addAndGet(scanPartitions(bootstrapServers, groupId, group, handler));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return scanned.get();
+    }
+
+    /** Default worker count: one per core, since the handlers are CPU-bound once data arrives. */
+    static int defaultWorkers() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Index of needle in haystack, or -1. Used as the pre-filter before JSON parsing.
+     */
+    static int indexOf(byte[] haystack, byte[] needle, int from) {
+        byte first = needle[0];
+        int last = haystack.length - needle.length;
+        outer:
+        for (int i = Math.max(from, 0); i <= last; i++) {
+            if (haystack[i] != first) continue;
+            for (int j = 1; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static long scanPartitions(String bootstrapServers, String groupId, List<TopicPartition> partitions,
+                                       RecordHandler handler) {
+        long scanned = 0;
+        try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(consumerProps(bootstrapServers, groupId))) {
+            consumer.assign(partitions);
+            consumer.seekToBeginning(partitions);
+
+            // Get end offsets to know when we've caught up
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+            while (!reachedEnd(consumer, partitions, endOffsets)) {
+                ConsumerRecords<byte[], byte[]> records = consumer.poll(Duration.ofSeconds(5));
+                for (ConsumerRecord<byte[], byte[]> record : records) {
+                    scanned++;
+                    handler.handle(record);
+                }
+            }
+        }
+        return scanned;
+    }
+
+    private static boolean reachedEnd(KafkaConsumer<?, ?> consumer, List<TopicPartition> partitions,
+                                      Map<TopicPartition, Long> endOffsets) {
+        for (TopicPartition tp : partitions) {
+            if (consumer.position(tp) < endOffsets.get(tp)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Properties consumerProps(String bootstrapServers, String groupId) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        return props;
+    }
+}
@@ -0,0 +1,87 @@
+package com.payroll.netpay;
+
+import java.util.Arrays;
+
+/**
+ * A set of pay period numbers held as sorted, disjoint [first, last] runs.
+ *
+ * Used for the periods the retention sweep evicted for an employee, and for the tombstones
+ * still owed for them after deactivation. Evicted periods are consecutive, so an employee
+ * usually needs a single run: two longs however many periods have been evicted.
+ *
+ * Not thread-safe: instances are only touched from the stream thread that owns the employee.
+ */
+final class PeriodRuns {
+
+    // {first, last} pairs, ascending and never adjacent or overlapping
+    private long[] runs = new long[0];
+
+    /** Add periods {@code first} through {@code last}, merging with the runs they touch. */
+    void add(long first, long last) {
+        int count = runs.length / 2;
+        int lo = 0;
+        while (lo < count && runs[2 * lo + 1] < first - 1) {
+            lo++;
+        }
+        int hi = lo;
+        while (hi < count && runs[2 * hi] <= last + 1) {
+            first = Math.min(first, runs[2 * hi]);
+            last = Math.max(last, runs[2 * hi + 1]);
+            hi++;
+        }
+
+        long[] merged = new long[(count - (hi - lo) + 1) * 2];
+        System.arraycopy(runs, 0, merged, 0, 2 * lo);
+        merged[2 * lo] = first;
+        merged[2 * lo + 1] = last;
+        System.arraycopy(runs, 2 * hi, merged, 2 * lo + 2, 2 * (count - hi));
+        runs = merged;
+    }
+
+    /** Remove and return up to {@code max} of the lowest periods. */
+    long[] poll(int max) {
+        long[] taken = new long[(int) Math.min(max, periodCount())];
+        int n = 0;
+        int run = 0;
+        while (n < taken.length) {
+            long first = runs[2 * run];
+            long last = runs[2 * run + 1];
+            while (n < taken.length && first <= last) {
+                taken[n++] = first++;
+            }
+            if (first > last) {
+                run++;
+            } else {
+                runs[2 * run] = first;
+            }
+        }
+        runs = Arrays.copyOfRange(runs, 2 * run, runs.length);
+        return taken;
+    }
+
+    /** Total number of periods across all runs. */
+    long periodCount() {
+        long count = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            count += runs[i + 1] - runs[i] + 1;
+        }
+        return count;
+    }
+
+    boolean isEmpty() {
+        return runs.length == 0;
+    }
+
+    int runCount() {
+        return runs.length / 2;
+    }
+
+    long first(int index) {
+        return runs[2 * index];
+    }
+
+    /** Last period of run {@code index}, inclusive. */
+    long last(int index) {
+        return runs[2 * index + 1];
+    }
+}
@@ -0,0 +1,208 @@
+package com.payroll.netpay;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.CumulativeCount;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.apache.kafka.common.metrics.stats.Rate;
+import org.apache.kafka.common.metrics.stats.Value;
+import org.apache.kafka.common.metrics.stats.WindowedCount;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsMetrics;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Employee/period pairs whose net pay must be recomputed after a tax or deduction change,
+ * worked off in bounded batches so a burst of changes does not stall input processing.
+ *
+ * Entries live in a changelogged store (key: employeeId|period, value: time enqueued), so
+ * queued work survives a restart, and a pair already queued is not added twice. poll resumes
+ * after the last key it took and wraps around, which visits every entry in turn and keeps
+ * RocksDB from scanning the same deleted keys on every batch.
+ *
+ * Task-level metrics (group net-pay-recompute): queue depth, enqueue and processing rates and
+ * totals, how long processed entries waited, and how often the queue was over capacity and
+ * drained inline, slowing down input.
+ *
+ * Not thread-safe: owned by one processor instance on its stream thread.
+ */
+final class RecomputeQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(RecomputeQueue.class);
+    private static final char KEY_SEPARATOR = '|';
+    private static final String METRIC_GROUP = "net-pay-recompute";
+
+    /** How far back changes reach and how the queue is drained; shared by every task. */
+    static final class Limits {
+        final int openPeriods;
+        final int batchSize;
+        final int capacity;
+        final Duration interval;
+
+        /**
+         * @param openPeriods pay periods recomputed on a change, counting the current one
+         * @param batchSize   entries processed per drain
+         * @param capacity    depth above which enqueuing drains a batch inline
+         * @param interval    how often a batch is drained
+         */
+        Limits(int openPeriods, int batchSize, int capacity, Duration interval) {
+            this.openPeriods = Math.max(1, openPeriods);
+            this.batchSize = Math.max(1, batchSize);
+            this.capacity = Math.max(1, capacity);
+            this.interval = interval;
+        }
+
+        /** Only the current pay period is recomputed. */
+        static Limits currentPeriod() {
+            return new Limits(1, 1000, 100_000, Duration.ofMillis(100));
+        }
+    }
+
+    /** Recomputes a batch of queued employee/periods; entry i is employeeIds[i] and payPeriodNumbers[i]. */
+    interface Recompute {
+        void apply(String[] employeeIds, long[] payPeriodNumbers) throws Exception;
+    }
+
+    private final KeyValueStore<String, Long> store;
+    private final Limits limits;
+    private final StreamsMetrics metrics;
+    private final Sensor depthSensor;
+    private final Sensor enqueuedSensor;
+    private final Sensor processedSensor;
+    private final Sensor waitSensor;
+    private final Sensor backpressureSensor;
+    private long depth;
+    // poll resumes after this key; null starts from the beginning
+    private String resumeAfter;
+
+    RecomputeQueue(KeyValueStore<String, Long> store, ProcessorContext<?, ?> context, Limits limits) {
+        this.store = store;
+        this.limits = limits;
+        this.metrics = context.metrics();
+
+        // Entries restored from the changelog
+        try (KeyValueIterator<String, Long> it = store.all()) {
+            while (it.hasNext()) {
+                it.next();
+                depth++;
+            }
+        }
+
+        Map<String, String> tags = Map.of(
+            "thread-id", Thread.currentThread().getName(),
+            "task-id", context.taskId().toString());
+        String prefix = METRIC_GROUP + "-" + context.taskId() + "-";
+        depthSensor = metrics.addSensor(prefix + "depth", Sensor.RecordingLevel.INFO);
+        depthSensor.add(metricName("queue-depth", "Employee/periods waiting to be recomputed", tags), new Value());
+        enqueuedSensor = rateTotalSensor(prefix + "enqueued", "enqueued", "employee/periods queued", tags);
+        processedSensor = rateTotalSensor(prefix + "processed", "processed", "employee/periods recomputed", tags);
+        waitSensor = metrics.addSensor(prefix + "wait", Sensor.RecordingLevel.INFO);
+        waitSensor.add(metricName("wait-ms-avg", "Average time a recomputed entry was queued", tags), new Avg());
+        waitSensor.add(metricName("wait-ms-max", "Maximum time a recomputed entry was queued", tags), new Max());
+        backpressureSensor = rateTotalSensor(prefix + "backpressure", "backpressure",
+            "inline drains because the queue was over capacity", tags);
+        depthSensor.record(depth);
+    }
+
+    private Sensor rateTotalSensor(String sensorName, String metric, String description, Map<String, String> tags) {
+        Sensor sensor = metrics.addSensor(sensorName, Sensor.RecordingLevel.INFO);
+        sensor.add(metricName(metric + "-rate", "Per-second rate of " + description, tags), new Rate(new WindowedCount()));
+        sensor.add(metricName(metric + "-total", "Total " + description, tags), new CumulativeCount());
+        return sensor;
+    }
+
+    private static MetricName metricName(String name, String description, Map<String, String> tags) {
+        return new MetricName(name, METRIC_GROUP, description, tags);
+    }
+
+    void enqueue(String employeeId, long payPeriodNumber) {
+        String key = employeeId + KEY_SEPARATOR + payPeriodNumber;
+        if (store.putIfAbsent(key, System.currentTimeMillis()) == null) {
+            depth++;
+            enqueuedSensor.record();
+            depthSensor.record(depth);
+        }
+    }
+
+    /** Drain a batch now if the queue is over capacity, which holds up the caller's input. */
+    void relieveBackpressure(Recompute recompute) {
+        if (depth <= limits.capacity) return;
+        backpressureSensor.record();
+        drain(recompute);
+    }
+
+    /**
+     * Take up to batchSize entries off the queue and recompute them together. A failure is
+     * logged and the entries dropped, as a failed inline recompute would have been.
+     * @return how many entries were taken
+     */
+    int drain(Recompute recompute) {
+        if (depth == 0) return 0;
+
+        List<KeyValue<String, Long>> batch = poll();
+        String[] employeeIds = new String[batch.size()];
+        long[] payPeriodNumbers = new long[batch.size()];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < batch.size(); i++) {
+            KeyValue<String, Long> entry = batch.get(i);
+            store.delete(entry.key);
+            depth--;
+            waitSensor.record(now - entry.value);
+
+            int sep = entry.key.lastIndexOf(KEY_SEPARATOR);
+            employeeIds[i] = entry.key.substring(0, sep);
+            payPeriodNumbers[i] = Long.parseLong(entry.key.substring(sep + 1));
+        }
+        try {
+            recompute.apply(employeeIds, payPeriodNumbers);
+        } catch (Exception e) {
+            log.error("Error recomputing a batch of {}: {}", batch.size(), e.getMessage(), e);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            processedSensor.record();
+        }
+        depthSensor.record(depth);
+        return batch.size();
+    }
+
+    private List<KeyValue<String, Long>> poll() {
+        List<KeyValue<String, Long>> batch = new ArrayList<>((int) Math.min(depth, limits.batchSize));
+        if (resumeAfter == null) {
+            collect(batch, store.range(null, null));
+        } else {
+            collect(batch, store.range(resumeAfter + '\0', null));
+            // Wrap around to the keys up to where this poll started
+            if (batch.size() < limits.batchSize) {
+                collect(batch, store.range(null, resumeAfter));
+            }
+        }
+        resumeAfter = batch.isEmpty() ? null : batch.get(batch.size() - 1).key;
+        return batch;
+    }
+
+    private void collect(List<KeyValue<String, Long>> batch, KeyValueIterator<String, Long> range) {
+        try (KeyValueIterator<String, Long> it = range) {
+            while (it.hasNext() && batch.size() < limits.batchSize) {
+                batch.add(it.next());
+            }
+        }
+    }
+
+    void close() {
+        metrics.removeSensor(depthSensor);
+        metrics.removeSensor(enqueuedSensor);
+        metrics.removeSensor(processedSensor);
+        metrics.removeSensor(waitSensor);
+        metrics.removeSensor(backpressureSensor);
+    }
+}
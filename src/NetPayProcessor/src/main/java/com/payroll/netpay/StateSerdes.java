@@ -0,0 +1,175 @@
+package com.payroll.netpay;
+
+import com.payroll.netpay.model.DeductionMap;
+import com.payroll.netpay.model.GrossPay;
+import com.payroll.netpay.model.TaxConfig;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary serdes for the state store values.
+ *
+ * These bytes never leave the application (local stores and their changelog topics), so a
+ * fixed field order is used instead of JSON to keep store reads and writes cheap.
+ */
+final class StateSerdes {
+
+    private static final TaxCalculator.FilingStatus[] FILING_STATUSES = TaxCalculator.FilingStatus.values();
+
+    private StateSerdes() {}
+
+    static Serde<GrossPayPeriods> grossPayPeriods() {
+        return serde((out, periods) -> {
+            out.writeInt(periods.size());
+            for (int i = 0; i < periods.size(); i++) {
+                writeGrossPay(out, periods.valueAt(i));
+            }
+        }, in -> {
+            GrossPayPeriods periods = new GrossPayPeriods();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                periods.put(readGrossPay(in));
+            }
+            return periods;
+        });
+    }
+
+    static Serde<PeriodRuns> periodRuns() {
+        return serde((out, runs) -> {
+            out.writeInt(runs.runCount());
+            for (int i = 0; i < runs.runCount(); i++) {
+                out.writeLong(runs.first(i));
+                out.writeLong(runs.last(i));
+            }
+        }, in -> {
+            PeriodRuns runs = new PeriodRuns();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                runs.add(in.readLong(), in.readLong());
+            }
+            return runs;
+        });
+    }
+
+    static Serde<TaxConfig> taxConfig() {
+        return serde((out, tc) -> {
+            writeString(out, tc.getEmployeeId());
+            writeString(out, tc.getFederalFilingStatus());
+            writeString(out, tc.getState());
+            out.writeDouble(tc.getAdditionalFederalWithholding());
+            out.writeDouble(tc.getAdditionalStateWithholding());
+            out.writeByte(tc.getFilingStatus().ordinal());
+            out.writeShort(tc.getStateCode());
+        }, in -> {
+            String employeeId = readString(in);
+            String federalFilingStatus = readString(in);
+            String state = readString(in);
+            double additionalFederal = in.readDouble();
+            double additionalState = in.readDouble();
+            // Values written before filing status and state were pre-resolved end here
+            if (in.available() == 0) {
+                return new TaxConfig(employeeId, federalFilingStatus, state, additionalFederal, additionalState);
+            }
+            return new TaxConfig(employeeId, federalFilingStatus, state, additionalFederal, additionalState,
+                FILING_STATUSES[in.readByte()], in.readShort());
+        });
+    }
+
+    static Serde<DeductionMap> deductionMap() {
+        return serde((out, dm) -> {
+            writeString(out, dm.getEmployeeId());
+            out.writeInt(dm.getDeductions().size());
+            for (Map.Entry<String, DeductionMap.DeductionEntry> e : dm.getDeductions().entrySet()) {
+                writeString(out, e.getKey());
+                out.writeDouble(e.getValue().getAmount());
+                out.writeBoolean(e.getValue().isPercentage());
+                out.writeBoolean(e.getValue().isActive());
+            }
+        }, in -> {
+            String employeeId = readString(in);
+            int count = in.readInt();
+            Map<String, DeductionMap.DeductionEntry> deductions = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String deductionId = readString(in);
+                deductions.put(deductionId, new DeductionMap.DeductionEntry(
+                    in.readDouble(), in.readBoolean(), in.readBoolean()));
+            }
+            return new DeductionMap(employeeId, deductions);
+        });
+    }
+
+    private static void writeGrossPay(DataOutputStream out, GrossPay gp) throws IOException {
+        writeString(out, gp.getEmployeeId());
+        out.writeLong(gp.getPayPeriodNumber());
+        out.writeDouble(gp.getPayRate());
+        writeString(out, gp.getPayType());
+        out.writeDouble(gp.getGrossPay());
+        out.writeDouble(gp.getTotalHoursWorked());
+        writeString(out, gp.getPayPeriodStart());
+        writeString(out, gp.getPayPeriodEnd());
+    }
+
+    private static GrossPay readGrossPay(DataInputStream in) throws IOException {
+        return new GrossPay(
+            readString(in),
+            in.readLong(),
+            in.readDouble(),
+            readString(in),
+            in.readDouble(),
+            in.readDouble(),
+            readString(in),
+            readString(in));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private interface Writer<T> {
+        void write(DataOutputStream out, T value) throws IOException;
+    }
+
+    private interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private static <T> Serde<T> serde(Writer<T> writer, Reader<T> reader) {
+        Serializer<T> serializer = (topic, value) -> {
+            if (value == null) return null;
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+                DataOutputStream out = new DataOutputStream(bytes);
+                writer.write(out, value);
+                out.flush();
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new SerializationException("Failed to serialize state value", e);
+            }
+        };
+        Deserializer<T> deserializer = (topic, data) -> {
+            if (data == null) return null;
+            try {
+                return reader.read(new DataInputStream(new ByteArrayInputStream(data)));
+            } catch (IOException e) {
+                throw new SerializationException("Failed to deserialize state value", e);
+            }
+        };
+        return Serdes.serdeFrom(serializer, deserializer);
+    }
+}
@@ -2,10 +2,37 @@ package com.payroll.netpay;
 
 import java.util.Map;
 
+/**
+ * Per-period federal and state tax.
+ *
+ * The bracket and rate tables below are compiled once at class load: each federal bracket
+ * carries the cumulative tax of all brackets below it, so a calculation is one binary search
+ * plus a multiply, and state rates sit in an array indexed by a code derived from the
+ * two-letter abbreviation. Filing status and state are resolved to FilingStatus / state code
+ * when a TaxConfig is built, so the hot path does no string handling. Results are identical
+ * to walking the brackets: the cumulative amounts are summed in the same order.
+ */
 public class TaxCalculator {
 
     private static final int PAY_PERIODS_PER_YEAR = 26;
 
+    /** Federal filing status; anything other than married filing jointly uses the single brackets. */
+    public enum FilingStatus {
+        SINGLE,
+        MARRIED;
+
+        public static FilingStatus parse(String filingStatus) {
+            if (filingStatus == null) return SINGLE;
+            return switch (filingStatus.toLowerCase()) {
+                case "married", "marriedfilingjointly" -> MARRIED;
+                default -> SINGLE; // Single, HeadOfHousehold, etc.
+            };
+        }
+    }
+
+    /** State code for an empty or unrecognized state (no state tax). */
+    public static final int NO_STATE = 0;
+
     // 2024 Federal progressive tax brackets
     // Each entry: {upper bound of bracket (annual), marginal rate}
     // Upper bound of Double.MAX_VALUE means "everything above"
@@ -84,49 +111,115 @@ public class TaxCalculator {
         Map.entry("DC", 0.0895)
     );
 
+    // Compiled tables, indexed by FilingStatus ordinal and by state code respectively
+    private static final BracketTable[] FEDERAL_TABLES = {
+        new BracketTable(SINGLE_BRACKETS),
+        new BracketTable(MARRIED_BRACKETS)
+    };
+
+    private static final double[] STATE_RATE_BY_CODE = new double[26 * 26 + 1];
+
+    static {
+        for (Map.Entry<String, Double> e : STATE_RATES.entrySet()) {
+            STATE_RATE_BY_CODE[stateCode(e.getKey())] = e.getValue();
+        }
+    }
+
     /**
      * Calculate per-period federal tax using progressive brackets.
      * Annualizes bi-weekly gross pay, applies brackets, divides back to per-period.
      */
-    public static double computeFederalTax(double biWeeklyGross, String filingStatus) {
+    public static double computeFederalTax(double biWeeklyGross, FilingStatus filingStatus) {
+        return computeFederalTax(biWeeklyGross, filingStatus.ordinal());
+    }
+
+    /** Same as above with the FilingStatus ordinal, for columnar callers (NetPayBatchCalculator). */
+    static double computeFederalTax(double biWeeklyGross, int filingStatusOrdinal) {
         double annualIncome = biWeeklyGross * PAY_PERIODS_PER_YEAR;
-        double[][] brackets = selectBrackets(filingStatus);
-        double annualTax = applyBrackets(annualIncome, brackets);
+        double annualTax = FEDERAL_TABLES[filingStatusOrdinal].annualTax(annualIncome);
         return roundToTwoDecimals(annualTax / PAY_PERIODS_PER_YEAR);
     }
 
+    public static double computeFederalTax(double biWeeklyGross, String filingStatus) {
+        return computeFederalTax(biWeeklyGross, FilingStatus.parse(filingStatus));
+    }
+
     /**
      * Calculate per-period state tax using flat rate.
      * Annualizes bi-weekly gross pay, applies flat rate, divides back to per-period.
+     *
+     * @param stateCode code from {@link #stateCode(String)}
      */
-    public static double computeStateTax(double biWeeklyGross, String state) {
-        if (state == null || state.isEmpty()) return 0.0;
-        double rate = STATE_RATES.getOrDefault(state.toUpperCase(), 0.0);
+    public static double computeStateTax(double biWeeklyGross, int stateCode) {
+        if (stateCode == NO_STATE) return 0.0;
+        double rate = STATE_RATE_BY_CODE[stateCode];
         double annualIncome = biWeeklyGross * PAY_PERIODS_PER_YEAR;
         double annualTax = annualIncome * rate;
         return roundToTwoDecimals(annualTax / PAY_PERIODS_PER_YEAR);
     }
 
-    private static double[][] selectBrackets(String filingStatus) {
-        if (filingStatus == null) return SINGLE_BRACKETS;
-        return switch (filingStatus.toLowerCase()) {
-            case "married", "marriedfilingjointly" -> MARRIED_BRACKETS;
-            default -> SINGLE_BRACKETS; // Single, HeadOfHousehold, etc.
-        };
+    public static double computeStateTax(double biWeeklyGross, String state) {
+        return computeStateTax(biWeeklyGross, stateCode(state));
+    }
+
+    /**
+     * Resolve a state abbreviation (any case) to a stable code: 1 + the two letters read as a
+     * base-26 number. The code only depends on the abbreviation, so it is safe to persist.
+     * Returns NO_STATE for null, empty or anything that is not two letters.
+     */
+    public static int stateCode(String state) {
+        if (state == null || state.length() != 2) return NO_STATE;
+        String upper = state.toUpperCase();
+        if (upper.length() != 2) return NO_STATE;
+        int c0 = upper.charAt(0) - 'A';
+        int c1 = upper.charAt(1) - 'A';
+        if (c0 < 0 || c0 >= 26 || c1 < 0 || c1 >= 26) return NO_STATE;
+        return 1 + c0 * 26 + c1;
     }
 
-    private static double applyBrackets(double annualIncome, double[][] brackets) {
-        double tax = 0.0;
-        double prevBound = 0.0;
-        for (double[] bracket : brackets) {
-            double upperBound = bracket[0];
-            double rate = bracket[1];
-            if (annualIncome <= prevBound) break;
-            double taxableInBracket = Math.min(annualIncome, upperBound) - prevBound;
-            tax += taxableInBracket * rate;
-            prevBound = upperBound;
+    /**
+     * Brackets as parallel arrays plus the tax owed on all brackets below each one.
+     */
+    private static final class BracketTable {
+        private final double[] lower;
+        private final double[] upper;
+        private final double[] rate;
+        private final double[] baseTax;
+
+        BracketTable(double[][] brackets) {
+            int n = brackets.length;
+            lower = new double[n];
+            upper = new double[n];
+            rate = new double[n];
+            baseTax = new double[n];
+            double prevBound = 0.0;
+            double tax = 0.0;
+            for (int i = 0; i < n; i++) {
+                lower[i] = prevBound;
+                upper[i] = brackets[i][0];
+                rate[i] = brackets[i][1];
+                baseTax[i] = tax;
+                tax += (upper[i] - prevBound) * rate[i];
+                prevBound = upper[i];
+            }
+        }
+
+        double annualTax(double annualIncome) {
+            if (!(annualIncome > 0.0)) return 0.0;
+
+            // First bracket whose upper bound covers the income
+            int lo = 0;
+            int hi = upper.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (annualIncome <= upper[mid]) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return baseTax[lo] + (Math.min(annualIncome, upper[lo]) - lower[lo]) * rate[lo];
         }
-        return tax;
     }
 
     private static double roundToTwoDecimals(double value) {
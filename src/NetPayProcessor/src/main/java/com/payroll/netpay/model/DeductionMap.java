@@ -1,32 +1,47 @@
 package com.payroll.netpay.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Immutable set of deductions for one employee. Updates go through {@link #withDeduction},
+ * which returns a new map so instances can be shared from the in-memory store without copying.
+ */
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class DeductionMap {
+public final class DeductionMap {
     @JsonProperty("employeeId")
-    private String employeeId;
+    private final String employeeId;
 
     @JsonProperty("deductions")
-    private Map<String, DeductionEntry> deductions = new HashMap<>();
-
-    public DeductionMap() {}
+    private final Map<String, DeductionEntry> deductions;
 
     public DeductionMap(String employeeId) {
+        this(employeeId, null);
+    }
+
+    @JsonCreator
+    public DeductionMap(@JsonProperty("employeeId") String employeeId,
+                        @JsonProperty("deductions") Map<String, DeductionEntry> deductions) {
         this.employeeId = employeeId;
+        this.deductions = deductions == null
+            ? Collections.emptyMap()
+            : Collections.unmodifiableMap(new HashMap<>(deductions));
     }
 
     public String getEmployeeId() { return employeeId; }
-    public void setEmployeeId(String employeeId) { this.employeeId = employeeId; }
 
     public Map<String, DeductionEntry> getDeductions() { return deductions; }
-    public void setDeductions(Map<String, DeductionEntry> deductions) { this.deductions = deductions; }
 
-    public void putDeduction(String deductionId, double amount, boolean isPercentage, boolean isActive) {
-        deductions.put(deductionId, new DeductionEntry(amount, isPercentage, isActive));
+    public DeductionEntry getDeduction(String deductionId) { return deductions.get(deductionId); }
+
+    public DeductionMap withDeduction(String deductionId, double amount, boolean isPercentage, boolean isActive) {
+        Map<String, DeductionEntry> updated = new HashMap<>(deductions);
+        updated.put(deductionId, new DeductionEntry(amount, isPercentage, isActive));
+        return new DeductionMap(employeeId, updated);
     }
 
     public double computeFixedTotal() {
@@ -44,31 +59,31 @@ public class DeductionMap {
     }
 
     @JsonIgnoreProperties(ignoreUnknown = true)
-    public static class DeductionEntry {
+    public static final class DeductionEntry {
         @JsonProperty("amount")
-        private double amount;
+        private final double amount;
 
         @JsonProperty("isPercentage")
-        private boolean isPercentage;
+        private final boolean isPercentage;
 
         @JsonProperty("isActive")
-        private boolean isActive;
+        private final boolean isActive;
 
-        public DeductionEntry() {}
-
-        public DeductionEntry(double amount, boolean isPercentage, boolean isActive) {
+        @JsonCreator
+        public DeductionEntry(@JsonProperty("amount") double amount,
+                              @JsonProperty("isPercentage") boolean isPercentage,
+                              @JsonProperty("isActive") boolean isActive) {
             this.amount = amount;
             this.isPercentage = isPercentage;
             this.isActive = isActive;
         }
 
         public double getAmount() { return amount; }
-        public void setAmount(double amount) { this.amount = amount; }
 
+        @JsonProperty("isPercentage")
         public boolean isPercentage() { return isPercentage; }
-        public void setPercentage(boolean percentage) { isPercentage = percentage; }
 
+        @JsonProperty("isActive")
         public boolean isActive() { return isActive; }
-        public void setActive(boolean active) { isActive = active; }
     }
 }
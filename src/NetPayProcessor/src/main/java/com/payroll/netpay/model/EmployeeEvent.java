@@ -0,0 +1,90 @@
+package com.payroll.netpay.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The fields of an employee-events record that net pay depends on, extracted from the Dapr
+ * CloudEvent once and forwarded through the repartition topic in place of the full entity.
+ *
+ * Only taxinfo.*, deduction.* and employee.deactivated events are represented; fields that
+ * do not apply to an event type keep their defaults.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public final class EmployeeEvent {
+    @JsonProperty("EventType")
+    private final String eventType;
+
+    @JsonProperty("Id")
+    private final String id;
+
+    @JsonProperty("EmployeeId")
+    private final String employeeId;
+
+    @JsonProperty("FederalFilingStatus")
+    private final String federalFilingStatus;
+
+    @JsonProperty("State")
+    private final String state;
+
+    @JsonProperty("AdditionalFederalWithholding")
+    private final double additionalFederalWithholding;
+
+    @JsonProperty("AdditionalStateWithholding")
+    private final double additionalStateWithholding;
+
+    @JsonProperty("Amount")
+    private final double amount;
+
+    @JsonProperty("IsPercentage")
+    private final boolean isPercentage;
+
+    @JsonProperty("IsActive")
+    private final boolean isActive;
+
+    @JsonCreator
+    public EmployeeEvent(@JsonProperty("EventType") String eventType,
+                         @JsonProperty("Id") String id,
+                         @JsonProperty("EmployeeId") String employeeId,
+                         @JsonProperty("FederalFilingStatus") String federalFilingStatus,
+                         @JsonProperty("State") String state,
+                         @JsonProperty("AdditionalFederalWithholding") double additionalFederalWithholding,
+                         @JsonProperty("AdditionalStateWithholding") double additionalStateWithholding,
+                         @JsonProperty("Amount") double amount,
+                         @JsonProperty("IsPercentage") boolean isPercentage,
+                         @JsonProperty("IsActive") boolean isActive) {
+        this.eventType = eventType;
+        this.id = id;
+        this.employeeId = employeeId;
+        this.federalFilingStatus = federalFilingStatus;
+        this.state = state;
+        this.additionalFederalWithholding = additionalFederalWithholding;
+        this.additionalStateWithholding = additionalStateWithholding;
+        this.amount = amount;
+        this.isPercentage = isPercentage;
+        this.isActive = isActive;
+    }
+
+    public String getEventType() { return eventType; }
+
+    public String getId() { return id; }
+
+    public String getEmployeeId() { return employeeId; }
+
+    public String getFederalFilingStatus() { return federalFilingStatus; }
+
+    public String getState() { return state; }
+
+    public double getAdditionalFederalWithholding() { return additionalFederalWithholding; }
+
+    public double getAdditionalStateWithholding() { return additionalStateWithholding; }
+
+    public double getAmount() { return amount; }
+
+    @JsonProperty("IsPercentage")
+    public boolean isPercentage() { return isPercentage; }
+
+    @JsonProperty("IsActive")
+    public boolean isActive() { return isActive; }
+}
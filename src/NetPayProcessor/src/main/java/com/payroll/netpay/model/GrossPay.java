@@ -1,57 +1,70 @@
 package com.payroll.netpay.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+/**
+ * Immutable gross pay for one employee and pay period, held directly in the processor's state.
+ */
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class GrossPay {
+public final class GrossPay {
     @JsonProperty("EMPLOYEE_ID")
-    private String employeeId;
+    private final String employeeId;
 
     @JsonProperty("PAY_PERIOD_NUMBER")
-    private long payPeriodNumber;
+    private final long payPeriodNumber;
 
     @JsonProperty("PAY_RATE")
-    private double payRate;
+    private final double payRate;
 
     @JsonProperty("PAY_TYPE")
-    private String payType;
+    private final String payType;
 
     @JsonProperty("GROSS_PAY")
-    private double grossPay;
+    private final double grossPay;
 
     @JsonProperty("TOTAL_HOURS_WORKED")
-    private double totalHoursWorked;
+    private final double totalHoursWorked;
 
     @JsonProperty("PAY_PERIOD_START")
-    private String payPeriodStart;
+    private final String payPeriodStart;
 
     @JsonProperty("PAY_PERIOD_END")
-    private String payPeriodEnd;
-
-    public GrossPay() {}
+    private final String payPeriodEnd;
+
+    @JsonCreator
+    public GrossPay(@JsonProperty("EMPLOYEE_ID") String employeeId,
+                    @JsonProperty("PAY_PERIOD_NUMBER") long payPeriodNumber,
+                    @JsonProperty("PAY_RATE") double payRate,
+                    @JsonProperty("PAY_TYPE") String payType,
+                    @JsonProperty("GROSS_PAY") double grossPay,
+                    @JsonProperty("TOTAL_HOURS_WORKED") double totalHoursWorked,
+                    @JsonProperty("PAY_PERIOD_START") String payPeriodStart,
+                    @JsonProperty("PAY_PERIOD_END") String payPeriodEnd) {
+        this.employeeId = employeeId;
+        this.payPeriodNumber = payPeriodNumber;
+        this.payRate = payRate;
+        this.payType = payType;
+        this.grossPay = grossPay;
+        this.totalHoursWorked = totalHoursWorked;
+        this.payPeriodStart = payPeriodStart;
+        this.payPeriodEnd = payPeriodEnd;
+    }
 
     public String getEmployeeId() { return employeeId; }
-    public void setEmployeeId(String employeeId) { this.employeeId = employeeId; }
 
     public long getPayPeriodNumber() { return payPeriodNumber; }
-    public void setPayPeriodNumber(long payPeriodNumber) { this.payPeriodNumber = payPeriodNumber; }
 
     public double getPayRate() { return payRate; }
-    public void setPayRate(double payRate) { this.payRate = payRate; }
 
     public String getPayType() { return payType; }
-    public void setPayType(String payType) { this.payType = payType; }
 
     public double getGrossPay() { return grossPay; }
-    public void setGrossPay(double grossPay) { this.grossPay = grossPay; }
 
     public double getTotalHoursWorked() { return totalHoursWorked; }
-    public void setTotalHoursWorked(double totalHoursWorked) { this.totalHoursWorked = totalHoursWorked; }
 
     public String getPayPeriodStart() { return payPeriodStart; }
-    public void setPayPeriodStart(String payPeriodStart) { this.payPeriodStart = payPeriodStart; }
 
     public String getPayPeriodEnd() { return payPeriodEnd; }
-    public void setPayPeriodEnd(String payPeriodEnd) { this.payPeriodEnd = payPeriodEnd; }
 }
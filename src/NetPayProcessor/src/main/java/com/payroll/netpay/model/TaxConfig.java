@@ -1,48 +1,76 @@
 package com.payroll.netpay.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.payroll.netpay.TaxCalculator;
 
+/**
+ * Immutable per-employee tax configuration, replaced wholesale on every taxinfo.* event.
+ * Filing status and state are also held pre-resolved for TaxCalculator.
+ */
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class TaxConfig {
+public final class TaxConfig {
     @JsonProperty("employeeId")
-    private String employeeId;
+    private final String employeeId;
 
     @JsonProperty("federalFilingStatus")
-    private String federalFilingStatus;
+    private final String federalFilingStatus;
 
     @JsonProperty("state")
-    private String state;
+    private final String state;
 
     @JsonProperty("additionalFederalWithholding")
-    private double additionalFederalWithholding;
+    private final double additionalFederalWithholding;
 
     @JsonProperty("additionalStateWithholding")
-    private double additionalStateWithholding;
+    private final double additionalStateWithholding;
 
-    public TaxConfig() {}
+    @JsonIgnore
+    private final TaxCalculator.FilingStatus filingStatus;
 
+    @JsonIgnore
+    private final int stateCode;
+
+    @JsonCreator
+    public TaxConfig(@JsonProperty("employeeId") String employeeId,
+                     @JsonProperty("federalFilingStatus") String federalFilingStatus,
+                     @JsonProperty("state") String state,
+                     @JsonProperty("additionalFederalWithholding") double additionalFederalWithholding,
+                     @JsonProperty("additionalStateWithholding") double additionalStateWithholding) {
+        this(employeeId, federalFilingStatus, state, additionalFederalWithholding, additionalStateWithholding,
+            TaxCalculator.FilingStatus.parse(federalFilingStatus), TaxCalculator.stateCode(state));
+    }
+
+    /**
+     * For deserializing state that was already resolved when it was stored.
+     */
     public TaxConfig(String employeeId, String federalFilingStatus, String state,
-                     double additionalFederalWithholding, double additionalStateWithholding) {
+                     double additionalFederalWithholding, double additionalStateWithholding,
+                     TaxCalculator.FilingStatus filingStatus, int stateCode) {
         this.employeeId = employeeId;
         this.federalFilingStatus = federalFilingStatus;
         this.state = state;
         this.additionalFederalWithholding = additionalFederalWithholding;
         this.additionalStateWithholding = additionalStateWithholding;
+        this.filingStatus = filingStatus;
+        this.stateCode = stateCode;
     }
 
     public String getEmployeeId() { return employeeId; }
-    public void setEmployeeId(String employeeId) { this.employeeId = employeeId; }
 
     public String getFederalFilingStatus() { return federalFilingStatus; }
-    public void setFederalFilingStatus(String federalFilingStatus) { this.federalFilingStatus = federalFilingStatus; }
 
     public String getState() { return state; }
-    public void setState(String state) { this.state = state; }
 
     public double getAdditionalFederalWithholding() { return additionalFederalWithholding; }
-    public void setAdditionalFederalWithholding(double additionalFederalWithholding) { this.additionalFederalWithholding = additionalFederalWithholding; }
 
     public double getAdditionalStateWithholding() { return additionalStateWithholding; }
-    public void setAdditionalStateWithholding(double additionalStateWithholding) { this.additionalStateWithholding = additionalStateWithholding; }
+
+    @JsonIgnore
+    public TaxCalculator.FilingStatus getFilingStatus() { return filingStatus; }
+
+    @JsonIgnore
+    public int getStateCode() { return stateCode; }
 }
@@ -0,0 +1,84 @@
+package com.payroll.netpay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payroll.netpay.model.NetPayResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a gross pay record value and writing a net pay result, through a String (the old
+ * String serdes) and directly as bytes. Run with -prof gc for the allocation per operation.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="ByteValueBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ByteValueBenchmark {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private byte[] grossPayValue;
+    private NetPayResult result;
+
+    @Setup
+    public void setUp() {
+        grossPayValue = ("{\"EMPLOYEE_ID\":\"3f2b8c1e-6a4d-4e2f-9b7a-1c5d8e9f0a2b\",\"PAY_PERIOD_NUMBER\":55,"
+            + "\"PAY_RATE\":32.5,\"PAY_TYPE\":\"1\",\"GROSS_PAY\":2600.0,\"TOTAL_HOURS_WORKED\":80.0,"
+            + "\"PAY_PERIOD_START\":\"2024-01-01\",\"PAY_PERIOD_END\":\"2024-01-14\"}").getBytes(StandardCharsets.UTF_8);
+
+        result = new NetPayResult();
+        result.setEmployeeId("3f2b8c1e-6a4d-4e2f-9b7a-1c5d8e9f0a2b");
+        result.setPayPeriodNumber(55);
+        result.setGrossPay(2600);
+        result.setFederalTax(260.5);
+        result.setStateTax(120.9);
+        result.setAdditionalFederalWithholding(25);
+        result.setAdditionalStateWithholding(10);
+        result.setTotalTax(416.4);
+        result.setTotalFixedDeductions(138.5);
+        result.setTotalPercentDeductions(156);
+        result.setTotalDeductions(294.5);
+        result.setNetPay(1889.1);
+        result.setPayRate(32.5);
+        result.setPayType("1");
+        result.setTotalHoursWorked(80);
+        result.setPayPeriodStart("2024-01-01");
+        result.setPayPeriodEnd("2024-01-14");
+    }
+
+    @Benchmark
+    public JsonNode parseViaString() throws Exception {
+        return mapper.readTree(new String(grossPayValue, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public JsonNode parseBytes() throws Exception {
+        return mapper.readTree(grossPayValue);
+    }
+
+    @Benchmark
+    public byte[] writeViaString() throws Exception {
+        return mapper.writeValueAsString(result).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] writeBytes() throws Exception {
+        return mapper.writeValueAsBytes(result);
+    }
+}
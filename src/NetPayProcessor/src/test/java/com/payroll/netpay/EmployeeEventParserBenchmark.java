@@ -0,0 +1,84 @@
+package com.payroll.netpay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payroll.netpay.model.EmployeeEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracting an EmployeeEvent from a Dapr CloudEvent: the streaming EmployeeEventParser against
+ * the original two-tree parse (envelope, then the stringified data).
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="EmployeeEventParserBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmployeeEventParserBenchmark {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /** timeentry.clockedout is dropped; taxinfo.updated is extracted. */
+    @Param({"timeentry.clockedout", "taxinfo.updated"})
+    public String eventType;
+
+    private byte[] cloudEvent;
+
+    @Setup
+    public void setUp() {
+        String data = "{\"Id\":\"7a1c3e5f-2b4d-4c6e-8f0a-9b1d3f5a7c9e\","
+            + "\"EmployeeId\":\"3f2b8c1e-6a4d-4e2f-9b7a-1c5d8e9f0a2b\","
+            + "\"FederalFilingStatus\":\"MarriedFilingJointly\",\"State\":\"CA\","
+            + "\"AdditionalFederalWithholding\":25.0,\"AdditionalStateWithholding\":10.0,"
+            + "\"ClockIn\":\"2024-01-08T08:00:00Z\",\"ClockOut\":\"2024-01-08T16:30:00Z\",\"HoursWorked\":8.5,"
+            + "\"CreatedAt\":\"2024-01-08T16:30:01.1234567Z\",\"UpdatedAt\":\"2024-01-08T16:30:01.1234567Z\","
+            + "\"Notes\":\"Regular shift, no overtime. Approved by shift lead.\",\"IsActive\":true,"
+            + "\"DomainEvents\":[{\"EventType\":\"" + eventType + "\",\"OccurredAt\":\"2024-01-08T16:30:01Z\","
+            + "\"AggregateId\":\"7a1c3e5f-2b4d-4c6e-8f0a-9b1d3f5a7c9e\"}]}";
+        String envelope = "{\"specversion\":\"1.0\",\"id\":\"b1946ac9-2f8e-4a6b-9d3c-5e7f1a2b3c4d\","
+            + "\"source\":\"payroll-api\",\"type\":\"com.dapr.event.sent\",\"pubsubname\":\"kafka-pubsub\","
+            + "\"topic\":\"employee-events\",\"datacontenttype\":\"application/json\","
+            + "\"traceparent\":\"00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01\","
+            + "\"time\":\"2024-01-08T16:30:01Z\",\"data\":\"" + data.replace("\"", "\\\"") + "\"}";
+        cloudEvent = envelope.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public EmployeeEvent streaming() throws Exception {
+        return EmployeeEventParser.parse(cloudEvent);
+    }
+
+    @Benchmark
+    public EmployeeEvent trees() throws Exception {
+        JsonNode envelope = mapper.readTree(cloudEvent);
+        String dataStr = envelope.path("data").asText(null);
+        if (dataStr == null) return null;
+        JsonNode data = mapper.readTree(dataStr);
+        JsonNode domainEvents = data.path("DomainEvents");
+        if (!domainEvents.isArray() || domainEvents.isEmpty()) return null;
+        String type = domainEvents.get(0).path("EventType").asText("");
+        if (!EmployeeEventParser.isRelevant(type)) return null;
+
+        return new EmployeeEvent(type, data.path("Id").asText(null), data.path("EmployeeId").asText(null),
+            data.path("FederalFilingStatus").asText("Single"), data.path("State").asText(""),
+            data.path("AdditionalFederalWithholding").asDouble(0), data.path("AdditionalStateWithholding").asDouble(0),
+            data.path("Amount").asDouble(0), data.path("IsPercentage").asBoolean(false),
+            data.path("IsActive").asBoolean(true));
+    }
+}
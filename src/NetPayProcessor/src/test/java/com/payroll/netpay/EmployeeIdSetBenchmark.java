@@ -0,0 +1,101 @@
+package com.payroll.netpay;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Deactivated-employee lookups, 99% misses, against a HashSet of Strings and EmployeeIdSet
+ * with and without its Bloom filter. Each lookup uses a fresh String, as a deserialized record
+ * key would be, so no cached hash code helps the HashSet.
+ *
+ * The retained heap of the populated set is printed once per fork, measured as used heap after
+ * a full GC with and without the set; run with a heap big enough for the largest size.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="EmployeeIdSetBenchmark -jvmArgs -Xmx4g"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmployeeIdSetBenchmark {
+
+    private static final int PROBES = 1 << 16;
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"HashSet", "EmployeeIdSet", "EmployeeIdSetNoBloom"})
+    public String impl;
+
+    private Predicate<String> set;
+    private char[][] probes;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        long before = usedHeapAfterGc();
+        if ("HashSet".equals(impl)) {
+            Set<String> strings = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                strings.add(uuid(random));
+            }
+            set = strings::contains;
+        } else {
+            EmployeeIdSet ids = new EmployeeIdSet("EmployeeIdSet".equals(impl));
+            for (int i = 0; i < size; i++) {
+                ids.add(uuid(random));
+            }
+            set = ids::contains;
+        }
+        long after = usedHeapAfterGc();
+        System.out.printf("%n%s with %,d IDs retains %,d MB%n", impl, size, (after - before) >> 20);
+
+        // Replay the insertion sequence for the hits, so 1 in 100 probes is a member
+        Random members = new Random(42);
+        Random misses = new Random(7);
+        probes = new char[PROBES][];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = (i % 100 == 0 ? uuid(members) : uuid(misses)).toCharArray();
+        }
+    }
+
+    @Benchmark
+    public boolean contains() {
+        char[] probe = probes[next++ & (PROBES - 1)];
+        return set.test(new String(probe));
+    }
+
+    private static String uuid(Random random) {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,28 @@
+package com.payroll.netpay;
+
+import org.apache.kafka.streams.TopologyDescription;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NetPayAppTest {
+
+    @Test
+    void internalTopicsAreExactlyThoseOfTheTopology() {
+        Set<String> expected = new HashSet<>();
+        for (TopologyDescription.Subtopology sub : NetPayApp.buildTopology().describe().subtopologies()) {
+            for (TopologyDescription.Node node : sub.nodes()) {
+                if (node instanceof TopologyDescription.Processor processor) {
+                    processor.stores().forEach(store -> expected.add("app-" + store + "-changelog"));
+                } else if (node instanceof TopologyDescription.Sink sink && sink.topic().endsWith("-repartition")) {
+                    expected.add("app-" + sink.topic());
+                }
+            }
+        }
+
+        assertEquals(expected, NetPayApp.internalTopics("app"));
+    }
+}
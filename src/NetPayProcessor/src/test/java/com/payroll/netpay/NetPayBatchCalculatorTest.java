@@ -0,0 +1,96 @@
+package com.payroll.netpay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NetPayBatchCalculatorTest {
+
+    private static final String[] STATES = {"", "CA", "NY", "TX", "NJ", "OR", "ND", "XX"};
+
+    @Test
+    void matchesPerRecordCalculation() {
+        NetPayBatchCalculator.Batch batch = randomBatch(50_000, new Random(42));
+        NetPayBatchCalculator.compute(batch);
+        assertMatchesPerRecord(batch);
+    }
+
+    @Test
+    void parallelMatchesPerRecordCalculation() {
+        NetPayBatchCalculator.Batch batch = randomBatch(100_000, new Random(7));
+        NetPayBatchCalculator.computeParallel(batch, new ForkJoinPool(4));
+        assertMatchesPerRecord(batch);
+    }
+
+    @Test
+    void rowWithoutTaxConfigHasNoTax() {
+        NetPayBatchCalculator.Batch batch = new NetPayBatchCalculator.Batch(1);
+        batch.grossPay[0] = 5000;
+        batch.stateCode[0] = (short) TaxCalculator.stateCode("CA");
+        batch.fixedDeductions[0] = 100;
+
+        NetPayBatchCalculator.compute(batch);
+
+        assertEquals(0.0, batch.federalTax[0]);
+        assertEquals(0.0, batch.stateTax[0]);
+        assertEquals(0.0, batch.totalTax[0]);
+        assertEquals(4900.0, batch.netPay[0]);
+    }
+
+    private static NetPayBatchCalculator.Batch randomBatch(int size, Random random) {
+        NetPayBatchCalculator.Batch batch = new NetPayBatchCalculator.Batch(size);
+        for (int i = 0; i < size; i++) {
+            double gross = Math.round(random.nextDouble() * 2_000_000) / 100.0;
+            batch.grossPay[i] = gross;
+            // Every fourth row has no TaxConfig; its other tax columns hold values that must be ignored
+            batch.hasTaxConfig[i] = i % 4 != 0;
+            batch.filingStatus[i] = (byte) random.nextInt(TaxCalculator.FilingStatus.values().length);
+            batch.stateCode[i] = (short) TaxCalculator.stateCode(STATES[random.nextInt(STATES.length)]);
+            batch.additionalFederalWithholding[i] = random.nextInt(5) * 12.5;
+            batch.additionalStateWithholding[i] = random.nextInt(3) * 7.25;
+            batch.fixedDeductions[i] = random.nextInt(20) * 13.37;
+            batch.percentDeductions[i] = gross * random.nextInt(10) / 100.0;
+        }
+        return batch;
+    }
+
+    /** Expected values computed the way NetPayProcessor.computeAndEmit does. */
+    private static void assertMatchesPerRecord(NetPayBatchCalculator.Batch b) {
+        for (int i = 0; i < b.size; i++) {
+            double gross = b.grossPay[i];
+            double federal = 0;
+            double state = 0;
+            double addlFederal = 0;
+            double addlState = 0;
+            if (b.hasTaxConfig[i]) {
+                TaxCalculator.FilingStatus status = TaxCalculator.FilingStatus.values()[b.filingStatus[i]];
+                federal = TaxCalculator.computeFederalTax(gross, status);
+                state = TaxCalculator.computeStateTax(gross, b.stateCode[i]);
+                addlFederal = b.additionalFederalWithholding[i];
+                addlState = b.additionalStateWithholding[i];
+            }
+            double totalTax = federal + state + addlFederal + addlState;
+            double totalDeductions = b.fixedDeductions[i] + b.percentDeductions[i];
+            double net = gross - totalTax - totalDeductions;
+
+            int row = i;
+            assertBits(roundTwo(federal), b.federalTax[i], row, "federalTax");
+            assertBits(roundTwo(state), b.stateTax[i], row, "stateTax");
+            assertBits(roundTwo(totalTax), b.totalTax[i], row, "totalTax");
+            assertBits(roundTwo(totalDeductions), b.totalDeductions[i], row, "totalDeductions");
+            assertBits(roundTwo(net), b.netPay[i], row, "netPay");
+        }
+    }
+
+    private static void assertBits(double expected, double actual, int row, String column) {
+        assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual),
+            () -> column + " of row " + row + ": expected " + expected + " but was " + actual);
+    }
+
+    private static double roundTwo(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,106 @@
+package com.payroll.netpay;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Results recomputed in batches after a tax or deduction change must be exactly what the
+ * per-record path emits for the same state.
+ */
+class NetPayRecomputeTest {
+
+    private static final String EMPLOYEE = "00000000-0000-0000-0000-000000000001";
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, byte[]> grossPay;
+    private TestInputTopic<String, byte[]> employeeEvents;
+    private TestOutputTopic<String, byte[]> netPay;
+
+    @BeforeEach
+    void setUp() {
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "net-pay-recompute-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        driver = new TopologyTestDriver(NetPayApp.buildTopology(CatchUpMonitor.live(), Duration.ZERO, 0,
+            RecomputeQueue.Limits.currentPeriod()), props);
+        grossPay = driver.createInputTopic(NetPayApp.GROSS_PAY_TOPIC,
+            Serdes.String().serializer(), Serdes.ByteArray().serializer());
+        employeeEvents = driver.createInputTopic(NetPayApp.EMPLOYEE_EVENTS_TOPIC,
+            Serdes.String().serializer(), Serdes.ByteArray().serializer());
+        netPay = driver.createOutputTopic(NetPayApp.NET_PAY_TOPIC,
+            Serdes.String().deserializer(), Serdes.ByteArray().deserializer());
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    void recomputeWithoutTaxConfigMatchesPerRecordResult() {
+        sendGrossPay(3187.45);
+        netPay.readKeyValuesToList();
+
+        // No taxinfo yet: the recompute must not apply default filing status and state
+        employeeEvents.pipeInput("ce-1", event("deduction.created",
+            "\"Id\":\"d1\",\"EmployeeId\":\"" + EMPLOYEE + "\",\"Amount\":7.5,\"IsPercentage\":true,\"IsActive\":true"));
+        assertRecomputedMatchesPerRecord(3187.45);
+    }
+
+    @Test
+    void recomputeWithTaxConfigMatchesPerRecordResult() {
+        sendGrossPay(8123.99);
+        employeeEvents.pipeInput("ce-1", event("deduction.created",
+            "\"Id\":\"d1\",\"EmployeeId\":\"" + EMPLOYEE + "\",\"Amount\":150,\"IsPercentage\":false,\"IsActive\":true"));
+        driver.advanceWallClockTime(Duration.ofMillis(100));
+        netPay.readKeyValuesToList();
+
+        employeeEvents.pipeInput("ce-2", event("taxinfo.updated",
+            "\"EmployeeId\":\"" + EMPLOYEE + "\",\"FederalFilingStatus\":\"MarriedFilingJointly\",\"State\":\"ca\","
+                + "\"AdditionalFederalWithholding\":25,\"AdditionalStateWithholding\":5.5"));
+        assertRecomputedMatchesPerRecord(8123.99);
+    }
+
+    private void assertRecomputedMatchesPerRecord(double gross) {
+        driver.advanceWallClockTime(Duration.ofMillis(100));
+        List<KeyValue<String, byte[]>> recomputed = netPay.readKeyValuesToList();
+        assertEquals(1, recomputed.size());
+
+        // Re-sending the same gross pay computes it on the per-record path
+        sendGrossPay(gross);
+        List<KeyValue<String, byte[]>> perRecord = netPay.readKeyValuesToList();
+        assertEquals(1, perRecord.size());
+
+        assertEquals(perRecord.get(0).key, recomputed.get(0).key);
+        assertArrayEquals(perRecord.get(0).value, recomputed.get(0).value,
+            () -> new String(recomputed.get(0).value, StandardCharsets.UTF_8) + " vs "
+                + new String(perRecord.get(0).value, StandardCharsets.UTF_8));
+    }
+
+    private void sendGrossPay(double gross) {
+        String key = "{\"EMPLOYEE_ID\":\"" + EMPLOYEE + "\",\"PAY_PERIOD_NUMBER\":" + NetPayProcessor.getCurrentPayPeriod() + "}";
+        String value = "{\"PAY_RATE\":40.0,\"PAY_TYPE\":\"1\",\"GROSS_PAY\":" + gross + ",\"TOTAL_HOURS_WORKED\":80.0}";
+        grossPay.pipeInput(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] event(String eventType, String fields) {
+        String data = "{" + fields + ",\"DomainEvents\":[{\"EventType\":\"" + eventType + "\"}]}";
+        String envelope = "{\"id\":\"ce\",\"data\":\"" + data.replace("\"", "\\\"") + "\"}";
+        return envelope.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,150 @@
+package com.payroll.netpay;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NetPayRetentionTest {
+
+    private static final int RETAINED_PERIODS = 3;
+    private static final String EMPLOYEE = "00000000-0000-0000-0000-000000000001";
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, byte[]> grossPay;
+    private TestInputTopic<String, byte[]> employeeEvents;
+    private TestOutputTopic<String, byte[]> netPay;
+
+    @BeforeEach
+    void setUp() {
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "net-pay-retention-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        driver = new TopologyTestDriver(NetPayApp.buildTopology(CatchUpMonitor.live(), Duration.ZERO,
+            RETAINED_PERIODS, RecomputeQueue.Limits.currentPeriod()), props);
+        grossPay = driver.createInputTopic(NetPayApp.GROSS_PAY_TOPIC,
+            Serdes.String().serializer(), Serdes.ByteArray().serializer());
+        employeeEvents = driver.createInputTopic(NetPayApp.EMPLOYEE_EVENTS_TOPIC,
+            Serdes.String().serializer(), Serdes.ByteArray().serializer());
+        netPay = driver.createOutputTopic(NetPayApp.NET_PAY_TOPIC,
+            Serdes.String().deserializer(), Serdes.ByteArray().deserializer());
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    void sweepKeepsOnlyRetainedPeriodsAndDropsEmptyEmployees() {
+        long current = NetPayProcessor.getCurrentPayPeriod();
+        for (long period = current - 9; period <= current; period++) {
+            sendGrossPay(EMPLOYEE, period);
+        }
+        String expiredOnly = "00000000-0000-0000-0000-000000000002";
+        sendGrossPay(expiredOnly, current - 20);
+
+        driver.advanceWallClockTime(Duration.ofMinutes(1));
+
+        KeyValueStore<String, GrossPayPeriods> store = driver.getKeyValueStore(NetPayProcessor.GROSS_PAY_STORE);
+        GrossPayPeriods periods = store.get(EMPLOYEE);
+        assertEquals(RETAINED_PERIODS, periods.size());
+        assertEquals(current - RETAINED_PERIODS + 1, periods.periodAt(0));
+        assertNull(store.get(expiredOnly));
+
+        KeyValueStore<String, PeriodRuns> evicted = driver.getKeyValueStore(NetPayProcessor.EVICTED_STORE);
+        PeriodRuns runs = evicted.get(EMPLOYEE);
+        assertEquals(1, runs.runCount());
+        assertEquals(current - 9, runs.first(0));
+        assertEquals(current - RETAINED_PERIODS, runs.last(0));
+    }
+
+    @Test
+    void deactivationLeavesNoRowsForEvictedPeriods() {
+        long current = NetPayProcessor.getCurrentPayPeriod();
+        // Far more evicted periods than one tombstone batch
+        for (long period = current - 1499; period <= current; period++) {
+            sendGrossPay(EMPLOYEE, period);
+        }
+        driver.advanceWallClockTime(Duration.ofMinutes(1));
+        Map<String, byte[]> table = readTable(new HashMap<>());
+        assertEquals(1500, table.size());
+
+        employeeEvents.pipeInput("ce-1", deactivatedEvent(EMPLOYEE));
+        // Retained periods are tombstoned right away, evicted ones are queued
+        readTable(table);
+        assertEquals(1500 - RETAINED_PERIODS, table.size());
+        assertNull(driver.<String, PeriodRuns>getKeyValueStore(NetPayProcessor.EVICTED_STORE).get(EMPLOYEE));
+
+        // One bounded batch per punctuation
+        driver.advanceWallClockTime(Duration.ofSeconds(1));
+        readTable(table);
+        assertEquals(1500 - RETAINED_PERIODS - 1000, table.size());
+
+        driver.advanceWallClockTime(Duration.ofSeconds(1));
+        readTable(table);
+        assertTrue(table.isEmpty(), () -> table.size() + " rows left");
+        assertNull(driver.<String, PeriodRuns>getKeyValueStore(NetPayProcessor.TOMBSTONE_STORE).get(EMPLOYEE));
+    }
+
+    @Test
+    void lateGrossPayForEvictedPeriodIsEmittedThenEvictedAgain() {
+        long current = NetPayProcessor.getCurrentPayPeriod();
+        sendGrossPay(EMPLOYEE, current);
+        sendGrossPay(EMPLOYEE, current - 10);
+        driver.advanceWallClockTime(Duration.ofMinutes(1));
+        netPay.readKeyValuesToList();
+
+        sendGrossPay(EMPLOYEE, current - 10);
+        List<KeyValue<String, byte[]>> emitted = netPay.readKeyValuesToList();
+        assertEquals(1, emitted.size());
+        assertNotNull(emitted.get(0).value);
+
+        driver.advanceWallClockTime(Duration.ofMinutes(1));
+        assertEquals(1, driver.<String, GrossPayPeriods>getKeyValueStore(NetPayProcessor.GROSS_PAY_STORE).get(EMPLOYEE).size());
+        PeriodRuns runs = driver.<String, PeriodRuns>getKeyValueStore(NetPayProcessor.EVICTED_STORE).get(EMPLOYEE);
+        assertEquals(1, runs.periodCount());
+    }
+
+    /** Apply everything emitted so far to a compacted view of employee-net-pay. */
+    private Map<String, byte[]> readTable(Map<String, byte[]> table) {
+        for (KeyValue<String, byte[]> kv : netPay.readKeyValuesToList()) {
+            if (kv.value == null) {
+                table.remove(kv.key);
+            } else {
+                table.put(kv.key, kv.value);
+            }
+        }
+        return table;
+    }
+
+    private void sendGrossPay(String employeeId, long period) {
+        String key = "{\"EMPLOYEE_ID\":\"" + employeeId + "\",\"PAY_PERIOD_NUMBER\":" + period + "}";
+        String value = "{\"PAY_RATE\":25.0,\"PAY_TYPE\":\"1\",\"GROSS_PAY\":2000.0,\"TOTAL_HOURS_WORKED\":80.0}";
+        grossPay.pipeInput(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] deactivatedEvent(String employeeId) {
+        String data = "{\"Id\":\"" + employeeId + "\",\"DomainEvents\":[{\"EventType\":\"employee.deactivated\"}]}";
+        String envelope = "{\"id\":\"ce\",\"data\":\"" + data.replace("\"", "\\\"") + "\"}";
+        return envelope.getBytes(StandardCharsets.UTF_8);
+    }
+}
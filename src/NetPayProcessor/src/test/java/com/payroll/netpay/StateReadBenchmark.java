@@ -0,0 +1,114 @@
+package com.payroll.netpay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payroll.netpay.model.DeductionMap;
+import com.payroll.netpay.model.GrossPay;
+import com.payroll.netpay.model.TaxConfig;
+import org.apache.kafka.common.serialization.Serde;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading one employee's state for a net pay computation, and updating a deduction, with the
+ * state held three ways: as JSON strings (the original stores), as typed objects, and as the
+ * binary store values the persistent stores hold now.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="StateReadBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StateReadBenchmark {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Serde<GrossPayPeriods> grossPaySerde = StateSerdes.grossPayPeriods();
+    private final Serde<TaxConfig> taxConfigSerde = StateSerdes.taxConfig();
+    private final Serde<DeductionMap> deductionSerde = StateSerdes.deductionMap();
+
+    private GrossPay grossPay;
+    private TaxConfig taxConfig;
+    private DeductionMap deductions;
+
+    private String grossPayJson;
+    private String taxConfigJson;
+    private String deductionsJson;
+
+    private byte[] grossPayBytes;
+    private byte[] taxConfigBytes;
+    private byte[] deductionBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        String employeeId = "3f2b8c1e-6a4d-4e2f-9b7a-1c5d8e9f0a2b";
+        grossPay = new GrossPay(employeeId, 55, 32.5, "1", 2600, 80, "2024-01-01", "2024-01-14");
+        taxConfig = new TaxConfig(employeeId, "MarriedFilingJointly", "CA", 25, 10);
+        deductions = new DeductionMap(employeeId)
+            .withDeduction("health", 120, false, true)
+            .withDeduction("dental", 18.5, false, true)
+            .withDeduction("401k", 6, true, true);
+
+        grossPayJson = mapper.writeValueAsString(grossPay);
+        taxConfigJson = mapper.writeValueAsString(taxConfig);
+        deductionsJson = mapper.writeValueAsString(deductions);
+
+        GrossPayPeriods periods = new GrossPayPeriods();
+        periods.put(grossPay);
+        grossPayBytes = grossPaySerde.serializer().serialize("", periods);
+        taxConfigBytes = taxConfigSerde.serializer().serialize("", taxConfig);
+        deductionBytes = deductionSerde.serializer().serialize("", deductions);
+    }
+
+    @Benchmark
+    public double readJsonStrings() throws Exception {
+        GrossPay gp = mapper.readValue(grossPayJson, GrossPay.class);
+        TaxConfig tc = mapper.readValue(taxConfigJson, TaxConfig.class);
+        DeductionMap dm = mapper.readValue(deductionsJson, DeductionMap.class);
+        return netPay(gp, tc, dm);
+    }
+
+    @Benchmark
+    public double readTypedObjects() {
+        return netPay(grossPay, taxConfig, deductions);
+    }
+
+    @Benchmark
+    public double readBinaryStoreValues() {
+        GrossPay gp = grossPaySerde.deserializer().deserialize("", grossPayBytes).get(55);
+        TaxConfig tc = taxConfigSerde.deserializer().deserialize("", taxConfigBytes);
+        DeductionMap dm = deductionSerde.deserializer().deserialize("", deductionBytes);
+        return netPay(gp, tc, dm);
+    }
+
+    @Benchmark
+    public String updateDeductionJson() throws Exception {
+        DeductionMap dm = mapper.readValue(deductionsJson, DeductionMap.class);
+        return mapper.writeValueAsString(dm.withDeduction("dental", 19, false, true));
+    }
+
+    @Benchmark
+    public DeductionMap updateDeductionTyped() {
+        return deductions.withDeduction("dental", 19, false, true);
+    }
+
+    private static double netPay(GrossPay gp, TaxConfig tc, DeductionMap dm) {
+        double gross = gp.getGrossPay();
+        double tax = TaxCalculator.computeFederalTax(gross, tc.getFilingStatus())
+            + TaxCalculator.computeStateTax(gross, tc.getStateCode())
+            + tc.getAdditionalFederalWithholding() + tc.getAdditionalStateWithholding();
+        return gross - tax - dm.computeFixedTotal() - dm.computePercentTotal(gross);
+    }
+}
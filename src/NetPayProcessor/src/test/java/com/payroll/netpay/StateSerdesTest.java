@@ -0,0 +1,55 @@
+package com.payroll.netpay;
+
+import com.payroll.netpay.model.TaxConfig;
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StateSerdesTest {
+
+    @Test
+    void taxConfigRoundTrips() {
+        Serde<TaxConfig> serde = StateSerdes.taxConfig();
+        TaxConfig tc = new TaxConfig("e1", "MarriedFilingJointly", "ca", 12.5, 3.25);
+
+        TaxConfig read = serde.deserializer().deserialize("t", serde.serializer().serialize("t", tc));
+
+        assertEquals("e1", read.getEmployeeId());
+        assertEquals("MarriedFilingJointly", read.getFederalFilingStatus());
+        assertEquals("ca", read.getState());
+        assertEquals(12.5, read.getAdditionalFederalWithholding());
+        assertEquals(3.25, read.getAdditionalStateWithholding());
+        assertEquals(TaxCalculator.FilingStatus.MARRIED, read.getFilingStatus());
+        assertEquals(TaxCalculator.stateCode("CA"), read.getStateCode());
+    }
+
+    @Test
+    void taxConfigWithoutResolvedFieldsIsResolvedOnRead() throws IOException {
+        // Layout written before filing status and state code were appended
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, "e1");
+        writeString(out, "married");
+        writeString(out, "NY");
+        out.writeDouble(10.0);
+        out.writeDouble(0.0);
+        out.flush();
+
+        TaxConfig read = StateSerdes.taxConfig().deserializer().deserialize("t", bytes.toByteArray());
+
+        assertEquals("e1", read.getEmployeeId());
+        assertEquals(10.0, read.getAdditionalFederalWithholding());
+        assertEquals(TaxCalculator.FilingStatus.MARRIED, read.getFilingStatus());
+        assertEquals(TaxCalculator.stateCode("NY"), read.getStateCode());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(true);
+        out.writeUTF(value);
+    }
+}
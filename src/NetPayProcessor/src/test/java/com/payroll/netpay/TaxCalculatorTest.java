@@ -0,0 +1,163 @@
+package com.payroll.netpay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The compiled bracket tables must give bit-for-bit the same results as walking the brackets,
+ * which is how TaxCalculator computed tax before (kept below as LegacyTaxCalculator).
+ */
+class TaxCalculatorTest {
+
+    private static final String[] FILING_STATUSES = {
+        null, "", "Single", "single", "HeadOfHousehold", "married", "Married", "MARRIED",
+        "MarriedFilingJointly", "marriedfilingjointly", "MarriedFilingSeparately", "unknown"
+    };
+
+    private static final String[] ODD_STATES = {null, "", "XX", "C1", "CAL", "C", "1A", "\u00df", "zz"};
+
+    @Test
+    void federalTaxMatchesBracketWalk() {
+        for (String filingStatus : FILING_STATUSES) {
+            TaxCalculator.FilingStatus resolved = TaxCalculator.FilingStatus.parse(filingStatus);
+            for (double gross : grossAmounts()) {
+                double expected = LegacyTaxCalculator.computeFederalTax(gross, filingStatus);
+                assertBitsEqual(expected, TaxCalculator.computeFederalTax(gross, filingStatus), filingStatus, gross);
+                assertBitsEqual(expected, TaxCalculator.computeFederalTax(gross, resolved), filingStatus, gross);
+                assertBitsEqual(expected, TaxCalculator.computeFederalTax(gross, resolved.ordinal()), filingStatus, gross);
+            }
+        }
+    }
+
+    @Test
+    void stateTaxMatchesFlatRateLookup() {
+        List<String> states = new ArrayList<>(Arrays.asList(ODD_STATES));
+        for (String state : LegacyTaxCalculator.STATE_RATES.keySet()) {
+            states.add(state);
+            states.add(state.toLowerCase(Locale.ROOT));
+        }
+        for (String state : states) {
+            int stateCode = TaxCalculator.stateCode(state);
+            for (double gross : grossAmounts()) {
+                double expected = LegacyTaxCalculator.computeStateTax(gross, state);
+                assertBitsEqual(expected, TaxCalculator.computeStateTax(gross, state), state, gross);
+                assertBitsEqual(expected, TaxCalculator.computeStateTax(gross, stateCode), state, gross);
+            }
+        }
+    }
+
+    /** Per-period amounts at, just below and just above every bracket edge, plus a dense sweep. */
+    private static List<Double> grossAmounts() {
+        List<Double> amounts = new ArrayList<>(List.of(-100.0, 0.0, Double.MIN_VALUE, 0.01, 1e9));
+        for (double[][] brackets : List.of(LegacyTaxCalculator.SINGLE_BRACKETS, LegacyTaxCalculator.MARRIED_BRACKETS)) {
+            for (double[] bracket : brackets) {
+                if (bracket[0] == Double.MAX_VALUE) continue;
+                double edge = bracket[0] / 26;
+                amounts.add(edge);
+                amounts.add(Math.nextDown(edge));
+                amounts.add(Math.nextUp(edge));
+                amounts.add(edge - 0.01);
+                amounts.add(edge + 0.01);
+            }
+        }
+        for (double gross = 0; gross < 40_000; gross += 3.17) {
+            amounts.add(gross);
+        }
+        return amounts;
+    }
+
+    private static void assertBitsEqual(double expected, double actual, String input, double gross) {
+        assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual),
+            () -> "input=" + input + ", gross=" + gross + ": expected " + expected + " but was " + actual);
+    }
+
+    /** TaxCalculator as it was before the bracket tables were compiled. */
+    private static final class LegacyTaxCalculator {
+
+        private static final int PAY_PERIODS_PER_YEAR = 26;
+
+        static final double[][] SINGLE_BRACKETS = {
+            {11600.0,    0.10},
+            {47150.0,    0.12},
+            {100525.0,   0.22},
+            {191950.0,   0.24},
+            {243725.0,   0.32},
+            {609350.0,   0.35},
+            {Double.MAX_VALUE, 0.37}
+        };
+
+        static final double[][] MARRIED_BRACKETS = {
+            {23200.0,    0.10},
+            {94300.0,    0.12},
+            {201050.0,   0.22},
+            {383900.0,   0.24},
+            {487450.0,   0.32},
+            {731200.0,   0.35},
+            {Double.MAX_VALUE, 0.37}
+        };
+
+        static final Map<String, Double> STATE_RATES = Map.ofEntries(
+            Map.entry("AL", 0.0500), Map.entry("AK", 0.0), Map.entry("AZ", 0.0250), Map.entry("AR", 0.0440),
+            Map.entry("CA", 0.0930), Map.entry("CO", 0.0440), Map.entry("CT", 0.0500), Map.entry("DE", 0.0660),
+            Map.entry("FL", 0.0), Map.entry("GA", 0.0549), Map.entry("HI", 0.0725), Map.entry("ID", 0.0580),
+            Map.entry("IL", 0.0495), Map.entry("IN", 0.0305), Map.entry("IA", 0.0570), Map.entry("KS", 0.0570),
+            Map.entry("KY", 0.0400), Map.entry("LA", 0.0425), Map.entry("ME", 0.0715), Map.entry("MD", 0.0575),
+            Map.entry("MA", 0.0500), Map.entry("MI", 0.0425), Map.entry("MN", 0.0985), Map.entry("MS", 0.0500),
+            Map.entry("MO", 0.0480), Map.entry("MT", 0.0675), Map.entry("NE", 0.0664), Map.entry("NV", 0.0),
+            Map.entry("NH", 0.0), Map.entry("NJ", 0.1075), Map.entry("NM", 0.0590), Map.entry("NY", 0.0685),
+            Map.entry("NC", 0.0450), Map.entry("ND", 0.0195), Map.entry("OH", 0.0350), Map.entry("OK", 0.0475),
+            Map.entry("OR", 0.0990), Map.entry("PA", 0.0307), Map.entry("RI", 0.0599), Map.entry("SC", 0.0640),
+            Map.entry("SD", 0.0), Map.entry("TN", 0.0), Map.entry("TX", 0.0), Map.entry("UT", 0.0465),
+            Map.entry("VT", 0.0875), Map.entry("VA", 0.0575), Map.entry("WA", 0.0), Map.entry("WV", 0.0512),
+            Map.entry("WI", 0.0530), Map.entry("WY", 0.0), Map.entry("DC", 0.0895)
+        );
+
+        static double computeFederalTax(double biWeeklyGross, String filingStatus) {
+            double annualIncome = biWeeklyGross * PAY_PERIODS_PER_YEAR;
+            double[][] brackets = selectBrackets(filingStatus);
+            double annualTax = applyBrackets(annualIncome, brackets);
+            return roundToTwoDecimals(annualTax / PAY_PERIODS_PER_YEAR);
+        }
+
+        static double computeStateTax(double biWeeklyGross, String state) {
+            if (state == null || state.isEmpty()) return 0.0;
+            double rate = STATE_RATES.getOrDefault(state.toUpperCase(), 0.0);
+            double annualIncome = biWeeklyGross * PAY_PERIODS_PER_YEAR;
+            double annualTax = annualIncome * rate;
+            return roundToTwoDecimals(annualTax / PAY_PERIODS_PER_YEAR);
+        }
+
+        private static double[][] selectBrackets(String filingStatus) {
+            if (filingStatus == null) return SINGLE_BRACKETS;
+            return switch (filingStatus.toLowerCase()) {
+                case "married", "marriedfilingjointly" -> MARRIED_BRACKETS;
+                default -> SINGLE_BRACKETS;
+            };
+        }
+
+        private static double applyBrackets(double annualIncome, double[][] brackets) {
+            double tax = 0.0;
+            double prevBound = 0.0;
+            for (double[] bracket : brackets) {
+                double upperBound = bracket[0];
+                double rate = bracket[1];
+                if (annualIncome <= prevBound) break;
+                double taxableInBracket = Math.min(annualIncome, upperBound) - prevBound;
+                tax += taxableInBracket * rate;
+                prevBound = upperBound;
+            }
+            return tax;
+        }
+
+        private static double roundToTwoDecimals(double value) {
+            return Math.round(value * 100.0) / 100.0;
+        }
+    }
+}